@@ -0,0 +1,59 @@
+package com.pesatalk.benchmark;
+
+import com.pesatalk.service.intent.AmountScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+// Amount extraction from a matched "send <amount> to john" message: the previous
+// group-substring, replaceAll and new BigDecimal path against AmountScanner reading the
+// matched region in place. Run with -prof gc for allocation rates.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AmountScannerBenchmark {
+
+    @Param({"500", "1,500", "150000.50"})
+    public String amount;
+
+    private String message;
+    private int start;
+    private int end;
+
+    @Setup
+    public void setUp() {
+        message = "send " + amount + " to john";
+        start = "send ".length();
+        end = start + amount.length();
+    }
+
+    @Benchmark
+    public BigDecimal legacyRegexBigDecimal() {
+        // matcher.group() copies the amount out of the message before cleaning it
+        String amountStr = message.substring(start, end);
+        try {
+            return new BigDecimal(amountStr.replaceAll("[,\\s]", ""));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public BigDecimal scanner() {
+        return AmountScanner.parse(message, start, end);
+    }
+}
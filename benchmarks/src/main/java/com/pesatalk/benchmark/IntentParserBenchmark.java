@@ -0,0 +1,81 @@
+package com.pesatalk.benchmark;
+
+import com.pesatalk.service.intent.AirtimeIntentParser;
+import com.pesatalk.service.intent.ClassifierIntentParser;
+import com.pesatalk.service.intent.IntentClassifier;
+import com.pesatalk.service.intent.IntentParser;
+import com.pesatalk.service.intent.InteractiveResponseParser;
+import com.pesatalk.service.intent.KeywordIntentParser;
+import com.pesatalk.service.intent.ParsedIntent;
+import com.pesatalk.service.intent.SendMoneyIntentParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Each IntentParser on its own over the whole message corpus, matches and misses alike,
+// since the orchestrator asks most parsers about messages they do not recognise. The
+// classifier is trained on the corpus at setup, so it scores with a real model.
+// Run with -prof gc for allocations per message.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IntentParserBenchmark {
+
+    @Param({"send-money", "airtime", "keyword", "interactive", "classifier"})
+    public String parserName;
+
+    private IntentParser parser;
+    private String[] messages;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        messages = MessageCorpus.texts();
+        parser = switch (parserName) {
+            case "send-money" -> new SendMoneyIntentParser();
+            case "airtime" -> new AirtimeIntentParser();
+            case "keyword" -> new KeywordIntentParser("");
+            case "interactive" -> new InteractiveResponseParser();
+            case "classifier" -> new ClassifierIntentParser(true, trainClassifier().toUri().toString(), 0.6, 0.8);
+            default -> throw new IllegalArgumentException("Unknown parser " + parserName);
+        };
+    }
+
+    @Benchmark
+    public Optional<ParsedIntent> parse() {
+        String message = messages[next];
+        next = next + 1 == messages.length ? 0 : next + 1;
+        return parser.parse(message);
+    }
+
+    // Written to a file so the parser loads it the way it does in production
+    private static Path trainClassifier() throws Exception {
+        List<IntentClassifier.Example> examples = MessageCorpus.examples();
+        IntentClassifier classifier = IntentClassifier.train(examples, 16, 20, 42L);
+        Path model = Files.createTempFile("intent-classifier", ".bin");
+        model.toFile().deleteOnExit();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(model))) {
+            classifier.write(out);
+        }
+        return model;
+    }
+}
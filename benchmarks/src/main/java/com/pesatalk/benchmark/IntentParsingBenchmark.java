@@ -0,0 +1,154 @@
+package com.pesatalk.benchmark;
+
+import com.pesatalk.model.enums.Intent;
+import com.pesatalk.service.IntentParsingService;
+import com.pesatalk.service.intent.AirtimeIntentParser;
+import com.pesatalk.service.intent.IntentParseCache;
+import com.pesatalk.service.intent.IntentParsingOrchestrator;
+import com.pesatalk.service.intent.InteractiveResponseParser;
+import com.pesatalk.service.intent.KeywordIntentParser;
+import com.pesatalk.service.intent.ParsedIntent;
+import com.pesatalk.service.intent.SendMoneyIntentParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Per-message cost of turning text into an intent over the message corpus: the regex and
+// keyword-list set that IntentParsingService used to run on its own, against the
+// orchestrator every entry point now shares, reached directly and through the
+// IntentParsingService facade. cacheBytes=0 measures the orchestrator's parsers with
+// every lookup missing its parse cache; the default size shows the steady state for
+// repeated short texts. Run with -prof gc for allocations per message.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IntentParsingBenchmark {
+
+    private static final Pattern SEND_MONEY_PATTERN = Pattern.compile(
+        "(?i)^(?:send|transfer|pay)\\s+" +
+        "(?:kes\\s+)?([\\d,]+(?:\\.\\d{1,2})?)\\s+" +
+        "(?:to|for)\\s+" +
+        "(.+?)\\s*$"
+    );
+
+    private static final Pattern AIRTIME_PATTERN = Pattern.compile(
+        "(?i)^(?:buy\\s+)?airtime\\s+(?:kes\\s+)?([\\d,]+(?:\\.\\d{1,2})?)(?:\\s+(?:for\\s+)?(.+))?\\s*$"
+    );
+
+    private static final List<String> BALANCE_KEYWORDS = List.of(
+        "balance", "check balance", "my balance", "how much"
+    );
+
+    private static final List<String> HISTORY_KEYWORDS = List.of(
+        "history", "transactions", "my transactions", "recent", "statement"
+    );
+
+    private static final List<String> HELP_KEYWORDS = List.of(
+        "help", "menu", "options", "what can you do", "commands"
+    );
+
+    private record LegacyResult(Intent intent, BigDecimal amount, String recipientIdentifier) {}
+
+    @Param({"0", "1048576"})
+    public long cacheBytes;
+
+    private IntentParsingOrchestrator orchestrator;
+    private IntentParsingService intentParsingService;
+    private String[] messages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        messages = MessageCorpus.texts();
+        InteractiveResponseParser interactiveParser = new InteractiveResponseParser();
+        orchestrator = new IntentParsingOrchestrator(
+            List.of(new SendMoneyIntentParser(), new AirtimeIntentParser(), new KeywordIntentParser(""),
+                interactiveParser),
+            interactiveParser,
+            new IntentParseCache(new SimpleMeterRegistry(), cacheBytes, Duration.ofHours(1)),
+            new SimpleMeterRegistry(),
+            Runnable::run,
+            false,
+            90,
+            Duration.ofMillis(25)
+        );
+        intentParsingService = new IntentParsingService(orchestrator);
+    }
+
+    @Benchmark
+    public Object legacyIntentParsingService() {
+        return legacyParse(nextMessage());
+    }
+
+    @Benchmark
+    public ParsedIntent unifiedOrchestrator() {
+        return orchestrator.parseText(nextMessage());
+    }
+
+    @Benchmark
+    public IntentParsingService.IntentResult intentParsingService() {
+        return intentParsingService.parseIntent(nextMessage());
+    }
+
+    private String nextMessage() {
+        String message = messages[next];
+        next = next + 1 == messages.length ? 0 : next + 1;
+        return message;
+    }
+
+    // IntentParsingService.parseIntent before it delegated to the orchestrator
+    private static LegacyResult legacyParse(String text) {
+        String normalized = text.trim().toLowerCase();
+
+        Matcher sendMoneyMatcher = SEND_MONEY_PATTERN.matcher(text.trim());
+        if (sendMoneyMatcher.matches()) {
+            BigDecimal amount = new BigDecimal(sendMoneyMatcher.group(1).replaceAll("[,\\s]", ""));
+            return new LegacyResult(Intent.SEND_MONEY, amount, sendMoneyMatcher.group(2).trim());
+        }
+
+        Matcher airtimeMatcher = AIRTIME_PATTERN.matcher(text.trim());
+        if (airtimeMatcher.matches()) {
+            BigDecimal amount = new BigDecimal(airtimeMatcher.group(1).replaceAll("[,\\s]", ""));
+            return new LegacyResult(Intent.BUY_AIRTIME, amount, airtimeMatcher.group(2));
+        }
+
+        if (matchesAny(normalized, BALANCE_KEYWORDS)) {
+            return new LegacyResult(Intent.CHECK_BALANCE, null, null);
+        }
+        if (matchesAny(normalized, HISTORY_KEYWORDS)) {
+            return new LegacyResult(Intent.TRANSACTION_HISTORY, null, null);
+        }
+        if (matchesAny(normalized, HELP_KEYWORDS)) {
+            return new LegacyResult(Intent.HELP, null, null);
+        }
+        return new LegacyResult(Intent.UNKNOWN, null, null);
+    }
+
+    private static boolean matchesAny(String text, List<String> keywords) {
+        for (String keyword : keywords) {
+            if (text.contains(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
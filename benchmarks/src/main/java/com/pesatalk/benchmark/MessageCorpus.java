@@ -0,0 +1,49 @@
+package com.pesatalk.benchmark;
+
+import com.pesatalk.model.enums.Intent;
+import com.pesatalk.service.intent.IntentClassifier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// The labelled message corpus on the classpath, in the INTENT<TAB>text format that
+// IntentClassifierTrainer reads. Benchmarks walk it one message per operation, so a
+// score is per message across the whole mix rather than per best-case input.
+final class MessageCorpus {
+
+    private static final String LOCATION = "/corpus/messages.tsv";
+
+    private MessageCorpus() {
+    }
+
+    static List<IntentClassifier.Example> examples() {
+        List<IntentClassifier.Example> examples = new ArrayList<>();
+        try (InputStream in = MessageCorpus.class.getResourceAsStream(LOCATION)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing corpus " + LOCATION);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                examples.add(new IntentClassifier.Example(
+                    Intent.valueOf(line.substring(0, tab).trim()), line.substring(tab + 1).trim()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return examples;
+    }
+
+    static String[] texts() {
+        return examples().stream().map(IntentClassifier.Example::text).toArray(String[]::new);
+    }
+}
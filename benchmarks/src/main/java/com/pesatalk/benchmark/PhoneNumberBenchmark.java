@@ -0,0 +1,46 @@
+package com.pesatalk.benchmark;
+
+import com.pesatalk.util.PhoneNumberUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// PhoneNumberUtil.normalizePhoneNumber over the ways recipients are typed in chat,
+// including names and numbers it has to reject. Run with -prof gc for allocations.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PhoneNumberBenchmark {
+
+    private static final String[] PHONE_NUMBERS = {
+        "0700000101", "+254700000102", "254700000103", "700000104", "0700 000 105",
+        "0700-000-106", "+254 700 000 107", "0110000108", "mama", "12345", "07000001"
+    };
+
+    private PhoneNumberUtil phoneNumberUtil;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        phoneNumberUtil = new PhoneNumberUtil("0123456789abcdef0123456789abcdef");
+    }
+
+    @Benchmark
+    public String normalizePhoneNumber() {
+        String phoneNumber = PHONE_NUMBERS[next];
+        next = next + 1 == PHONE_NUMBERS.length ? 0 : next + 1;
+        return phoneNumberUtil.normalizePhoneNumber(phoneNumber);
+    }
+}
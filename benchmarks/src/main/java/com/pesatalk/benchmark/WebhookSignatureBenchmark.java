@@ -0,0 +1,98 @@
+package com.pesatalk.benchmark;
+
+import com.pesatalk.service.webhook.WebhookSignatureVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+// Per-request cost of X-Hub-Signature-256 verification: the previous controller
+// implementation against WebhookSignatureVerifier. Run with -prof gc for allocation rates.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebhookSignatureBenchmark {
+
+    private static final String SECRET = "benchmark-app-secret";
+
+    @Param({"512", "4096"})
+    public int payloadSize;
+
+    private byte[] payloadBytes;
+    private String payloadString;
+    private String signature;
+    private WebhookSignatureVerifier verifier;
+
+    @Setup
+    public void setUp() throws Exception {
+        payloadString = samplePayload(payloadSize);
+        payloadBytes = payloadString.getBytes(StandardCharsets.UTF_8);
+        signature = "sha256=" + legacyComputeHmacSha256(payloadString, SECRET);
+        verifier = new WebhookSignatureVerifier(SECRET);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean legacyStringHmac() throws Exception {
+        // String body as bound by @RequestBody String, re-encoded per request
+        String payload = new String(payloadBytes, StandardCharsets.UTF_8);
+        String expected = signature.substring("sha256=".length());
+        return legacySecureCompare(expected, legacyComputeHmacSha256(payload, SECRET));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void pooledMacRawBytes() {
+        // Throws on mismatch, so the work cannot be dead-code eliminated
+        verifier.verify(signature, payloadBytes);
+    }
+
+    private static String legacyComputeHmacSha256(String payload, String secret) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return HexFormat.of().formatHex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static boolean legacySecureCompare(String a, String b) {
+        if (a == null || b == null || a.length() != b.length()) {
+            return false;
+        }
+        int result = 0;
+        for (int i = 0; i < a.length(); i++) {
+            result |= a.charAt(i) ^ b.charAt(i);
+        }
+        return result == 0;
+    }
+
+    private static String samplePayload(int size) {
+        String message = """
+            {"from":"254712345678","id":"wamid.HBgMMjU0NzEyMzQ1Njc4FQIAEhgUM0VCMDRGQjE2","timestamp":"1700000000",\
+            "type":"text","text":{"body":"send 1500 to john"}}""";
+        StringBuilder sb = new StringBuilder("""
+            {"object":"whatsapp_business_account","entry":[{"id":"123456789","changes":[{"value":\
+            {"messaging_product":"whatsapp","metadata":{"display_phone_number":"254700000000",\
+            "phone_number_id":"123456789"},"messages":[""");
+        while (sb.length() < size) {
+            sb.append(message).append(',');
+        }
+        sb.setLength(sb.length() - 1);
+        return sb.append("]},\"field\":\"messages\"}]}]}").toString();
+    }
+}
@@ -0,0 +1,65 @@
+package com.pesatalk.tools;
+
+import com.pesatalk.model.enums.Intent;
+import com.pesatalk.service.intent.IntentClassifier;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Offline training for ClassifierIntentParser, kept out of the application jar. Reads
+// labelled messages as lines of INTENT<TAB>text (blank lines and # comments skipped) and
+// writes the model file, from the benchmarks directory after mvn -B package:
+//
+//   java -cp target/benchmarks.jar com.pesatalk.tools.IntentClassifierTrainer \
+//     labelled.tsv intent-classifier.bin
+public final class IntentClassifierTrainer {
+
+    private static final int DEFAULT_BUCKET_BITS = 16;
+    private static final int DEFAULT_EPOCHS = 20;
+
+    private IntentClassifierTrainer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: IntentClassifierTrainer <labelled.tsv> <model.bin> [bucket-bits] [epochs]");
+            System.exit(2);
+        }
+        int bucketBits = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BUCKET_BITS;
+        int epochs = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_EPOCHS;
+
+        List<IntentClassifier.Example> examples = readExamples(Path.of(args[0]));
+        IntentClassifier model = IntentClassifier.train(examples, bucketBits, epochs, 42L);
+
+        long correct = examples.stream()
+            .filter(example -> model.predict(example.text()).intent() == example.intent())
+            .count();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Path.of(args[1])))) {
+            model.write(out);
+        }
+        System.out.printf("Trained on %d examples of %s, training accuracy %.3f%n",
+            examples.size(), model.intents(), (double) correct / examples.size());
+    }
+
+    static List<IntentClassifier.Example> readExamples(Path file) throws IOException {
+        List<IntentClassifier.Example> examples = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                throw new IllegalArgumentException("Expected INTENT<TAB>text: " + line);
+            }
+            examples.add(new IntentClassifier.Example(
+                Intent.valueOf(line.substring(0, tab).trim()), line.substring(tab + 1).trim()));
+        }
+        return examples;
+    }
+}
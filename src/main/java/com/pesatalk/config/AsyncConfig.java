@@ -3,14 +3,19 @@ package com.pesatalk.config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
@@ -19,8 +24,54 @@ public class AsyncConfig implements AsyncConfigurer {
 
     private static final Logger log = LoggerFactory.getLogger(AsyncConfig.class);
 
+    private final boolean virtualThreads;
+    private final int asyncConcurrencyLimit;
+    private final int webhookConcurrencyLimit;
+    private final int intentParserPoolSize;
+    private final int stkPushPoolSize;
+    private final int schedulingPoolSize;
+    private final int outboundJobPoolSize;
+
+    public AsyncConfig(
+        @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+        @Value("${threads.async-concurrency-limit:200}") int asyncConcurrencyLimit,
+        @Value("${threads.webhook-concurrency-limit:500}") int webhookConcurrencyLimit,
+        @Value("${threads.intent-parser-pool-size:4}") int intentParserPoolSize,
+        @Value("${threads.stk-push-pool-size:8}") int stkPushPoolSize,
+        @Value("${spring.task.scheduling.pool.size:4}") int schedulingPoolSize,
+        @Value("${threads.outbound-job-pool-size:2}") int outboundJobPoolSize
+    ) {
+        this.virtualThreads = virtualThreads;
+        this.asyncConcurrencyLimit = asyncConcurrencyLimit;
+        this.webhookConcurrencyLimit = webhookConcurrencyLimit;
+        this.intentParserPoolSize = intentParserPoolSize;
+        this.stkPushPoolSize = stkPushPoolSize;
+        this.schedulingPoolSize = schedulingPoolSize;
+        this.outboundJobPoolSize = outboundJobPoolSize;
+    }
+
+    // Default scheduler for @Scheduled jobs. Declared here rather than left to Boot, which
+    // backs off once any other TaskScheduler bean exists; @Scheduled falls back to this
+    // name when more than one is present.
+    @Bean(name = "taskScheduler")
+    public TaskScheduler taskScheduler() {
+        return scheduler("scheduling-", schedulingPoolSize);
+    }
+
+    // Jobs that block on calls to Meta or Daraja (outbox relay, STK reconciliation) run
+    // here, so a slow upstream cannot hold up the expiry poll, load sampling or the
+    // status flush on the default scheduler
+    @Bean(name = "outboundJobScheduler")
+    public TaskScheduler outboundJobScheduler() {
+        return scheduler("outbound-job-", outboundJobPoolSize);
+    }
+
     @Bean(name = "taskExecutor")
     public Executor taskExecutor() {
+        if (virtualThreads) {
+            return new BoundedVirtualThreadExecutor("pesatalk-async-", asyncConcurrencyLimit, 60_000, false);
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(20);
@@ -37,20 +88,81 @@ public class AsyncConfig implements AsyncConfigurer {
 
     @Bean(name = "webhookExecutor")
     public Executor webhookExecutor() {
+        if (virtualThreads) {
+            return new BoundedVirtualThreadExecutor("webhook-async-", webhookConcurrencyLimit, 30_000, false);
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(10);
         executor.setMaxPoolSize(50);
         executor.setQueueCapacity(200);
         executor.setThreadNamePrefix("webhook-async-");
-        executor.setRejectedExecutionHandler((r, exec) ->
-            log.warn("Webhook task rejected: queue is full")
-        );
+        // Throw rather than drop so callers can shed the payload back to Meta or the journal
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(30);
         executor.initialize();
         return executor;
     }
 
+    // Fan-out evaluation of intent parsers; CPU-bound, so sized near the core count
+    @Bean(name = "intentParserExecutor")
+    public Executor intentParserExecutor() {
+        if (virtualThreads) {
+            return new BoundedVirtualThreadExecutor("intent-parser-", intentParserPoolSize, 5_000, true);
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(intentParserPoolSize);
+        executor.setMaxPoolSize(intentParserPoolSize);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("intent-parser-");
+        // A full queue runs the parser on the message's own thread rather than losing it
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(5);
+        executor.initialize();
+        return executor;
+    }
+
+    // The short claim and record transactions around each STK push; the Daraja call
+    // itself is non-blocking, so no worker waits on it
+    @Bean(name = "stkPushExecutor")
+    public Executor stkPushExecutor() {
+        if (virtualThreads) {
+            return new BoundedVirtualThreadExecutor("stk-push-", stkPushPoolSize, 60_000, false);
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(stkPushPoolSize);
+        executor.setMaxPoolSize(stkPushPoolSize);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("stk-push-");
+        // Throw so the dispatcher leaves the transaction CONFIRMED for the redispatch sweep
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    private TaskScheduler scheduler(String threadNamePrefix, int poolSize) {
+        if (virtualThreads) {
+            SimpleAsyncTaskScheduler scheduler = new SimpleAsyncTaskScheduler();
+            scheduler.setThreadNamePrefix(threadNamePrefix);
+            scheduler.setVirtualThreads(true);
+            return scheduler;
+        }
+
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix(threadNamePrefix);
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        scheduler.initialize();
+        return scheduler;
+    }
+
     @Override
     public Executor getAsyncExecutor() {
         return taskExecutor();
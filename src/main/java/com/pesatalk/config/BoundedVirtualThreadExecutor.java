@@ -0,0 +1,67 @@
+package com.pesatalk.config;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.Semaphore;
+
+// Runs each task on its own virtual thread, with at most concurrencyLimit running at once.
+// Unlike SimpleAsyncTaskExecutor's own limit, which parks the submitter until a slot
+// frees, a full executor either throws TaskRejectedException, as AbortPolicy does for the
+// platform pools, or runs the task on the caller's thread, as CallerRunsPolicy does.
+public class BoundedVirtualThreadExecutor implements TaskExecutor, AutoCloseable {
+
+    private final SimpleAsyncTaskExecutor delegate;
+    private final Semaphore permits;
+    private final int concurrencyLimit;
+    private final boolean callerRunsWhenFull;
+
+    public BoundedVirtualThreadExecutor(
+        String threadNamePrefix,
+        int concurrencyLimit,
+        long taskTerminationTimeoutMillis,
+        boolean callerRunsWhenFull
+    ) {
+        this.delegate = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        this.delegate.setVirtualThreads(true);
+        this.delegate.setTaskTerminationTimeout(taskTerminationTimeoutMillis);
+        this.permits = new Semaphore(concurrencyLimit);
+        this.concurrencyLimit = concurrencyLimit;
+        this.callerRunsWhenFull = callerRunsWhenFull;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!permits.tryAcquire()) {
+            if (callerRunsWhenFull) {
+                task.run();
+                return;
+            }
+            throw new TaskRejectedException(
+                "Executor " + delegate.getThreadNamePrefix() + " is running " + concurrencyLimit + " tasks");
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Fraction of the concurrency limit in use, standing in for queue fill since nothing queues
+    public double utilisation() {
+        return (double) (concurrencyLimit - permits.availablePermits()) / concurrencyLimit;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -1,13 +1,16 @@
 package com.pesatalk.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pesatalk.exception.WebhookVerificationException;
-import com.pesatalk.integration.whatsapp.dto.WhatsAppWebhookPayload;
-import com.pesatalk.service.MessageProcessingService;
+import com.pesatalk.service.webhook.WebhookIngestQueue;
+import com.pesatalk.service.webhook.WebhookLoadShedder;
+import com.pesatalk.service.webhook.WebhookPayloadProcessor;
+import com.pesatalk.service.webhook.WebhookSignatureVerifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -17,12 +20,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.util.HexFormat;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 
 @RestController
@@ -30,27 +29,28 @@ import java.util.concurrent.Executor;
 public class WebhookController {
 
     private static final Logger log = LoggerFactory.getLogger(WebhookController.class);
-    private static final String HMAC_SHA256 = "HmacSHA256";
-    private static final String SIGNATURE_PREFIX = "sha256=";
 
-    private final MessageProcessingService messageProcessingService;
-    private final ObjectMapper objectMapper;
+    private final WebhookPayloadProcessor payloadProcessor;
+    private final WebhookIngestQueue ingestQueue;
     private final Executor webhookExecutor;
+    private final WebhookSignatureVerifier signatureVerifier;
+    private final WebhookLoadShedder loadShedder;
     private final String verifyToken;
-    private final String appSecret;
 
     public WebhookController(
-        MessageProcessingService messageProcessingService,
-        ObjectMapper objectMapper,
+        WebhookPayloadProcessor payloadProcessor,
+        WebhookIngestQueue ingestQueue,
         @Qualifier("webhookExecutor") Executor webhookExecutor,
-        @Value("${whatsapp.api.verify-token}") String verifyToken,
-        @Value("${whatsapp.api.app-secret}") String appSecret
+        WebhookSignatureVerifier signatureVerifier,
+        WebhookLoadShedder loadShedder,
+        @Value("${whatsapp.api.verify-token}") String verifyToken
     ) {
-        this.messageProcessingService = messageProcessingService;
-        this.objectMapper = objectMapper;
+        this.payloadProcessor = payloadProcessor;
+        this.ingestQueue = ingestQueue;
         this.webhookExecutor = webhookExecutor;
+        this.signatureVerifier = signatureVerifier;
+        this.loadShedder = loadShedder;
         this.verifyToken = verifyToken;
-        this.appSecret = appSecret;
     }
 
     @GetMapping
@@ -78,140 +78,83 @@ public class WebhookController {
     @PostMapping
     public ResponseEntity<Void> handleWebhook(
         @RequestHeader(value = "X-Hub-Signature-256", required = false) String signature,
-        @RequestBody String rawPayload
+        @RequestBody byte[] rawPayload
     ) {
-        // Verify signature
-        verifySignature(signature, rawPayload);
-
-        // Parse payload
-        WhatsAppWebhookPayload payload;
-        try {
-            payload = objectMapper.readValue(rawPayload, WhatsAppWebhookPayload.class);
-        } catch (Exception e) {
-            log.error("Failed to parse webhook payload", e);
-            return ResponseEntity.badRequest().build();
-        }
-
-        // Process asynchronously to respond within 20 seconds
-        webhookExecutor.execute(() -> processPayload(payload));
-
-        // Acknowledge immediately
-        return ResponseEntity.ok().build();
-    }
-
-    private void verifySignature(String signature, String payload) {
-        if (appSecret == null || appSecret.isBlank()) {
-            log.warn("App secret not configured, skipping signature verification");
-            return;
-        }
-
-        if (signature == null || signature.isBlank()) {
-            log.warn("Missing webhook signature");
-            throw WebhookVerificationException.missingSignature();
+        // Verify signature over the exact bytes Meta signed
+        signatureVerifier.verify(signature, rawPayload);
+
+        // Shed load before taking on work we cannot finish promptly, so Meta backs off
+        // and redelivers instead of the payload being dropped behind a 200
+        String overload = loadShedder.overloadReason();
+
+        // Journal the raw payload before acknowledging so a crash or redeploy
+        // cannot lose a message Meta will not redeliver after a 200
+        if (ingestQueue.isEnabled()) {
+            if (overload != null) {
+                throw loadShedder.reject(overload);
+            }
+            if (!journal(rawPayload)) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+            loadShedder.admitted();
+            return ResponseEntity.ok().build();
         }
 
-        if (!signature.startsWith(SIGNATURE_PREFIX)) {
-            log.warn("Invalid signature format");
-            throw WebhookVerificationException.invalidSignature();
+        if (overload == null) {
+            // Process asynchronously to respond within 20 seconds
+            Runnable task = loadShedder.track(() -> {
+                try {
+                    return payloadProcessor.process(rawPayload).whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            retryFromJournal(rawPayload, error);
+                        }
+                    });
+                } catch (IOException e) {
+                    log.error("Failed to parse webhook payload", e);
+                    return CompletableFuture.completedFuture(null);
+                } catch (RuntimeException e) {
+                    retryFromJournal(rawPayload, e);
+                    return CompletableFuture.completedFuture(null);
+                }
+            });
+            try {
+                webhookExecutor.execute(task);
+                loadShedder.admitted();
+                return ResponseEntity.ok().build();
+            } catch (TaskRejectedException e) {
+                loadShedder.untrack();
+                overload = "executor_rejected";
+            }
         }
 
-        String expectedSignature = signature.substring(SIGNATURE_PREFIX.length());
-        String computedSignature = computeHmacSha256(payload, appSecret);
-
-
-        if (!secureCompare(expectedSignature, computedSignature)) {
-            log.warn("Webhook signature mismatch");
-            throw WebhookVerificationException.invalidSignature();
+        // Overflow goes to the ingest stream when spilling, otherwise back to Meta
+        if (loadShedder.spillsToJournal() && journal(rawPayload)) {
+            loadShedder.spilled(overload);
+            return ResponseEntity.ok().build();
         }
-
-        log.debug("Webhook signature verified");
+        throw loadShedder.reject(overload);
     }
 
-    private String computeHmacSha256(String payload, String secret) {
-        try {
-            Mac mac = Mac.getInstance(HMAC_SHA256);
-            SecretKeySpec secretKeySpec = new SecretKeySpec(
-                secret.getBytes(StandardCharsets.UTF_8),
-                HMAC_SHA256
-            );
-            mac.init(secretKeySpec);
-            byte[] hmacBytes = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
-            return HexFormat.of().formatHex(hmacBytes);
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            log.error("Failed to compute HMAC signature", e);
-            throw new RuntimeException("Failed to compute webhook signature", e);
+    // Meta will not redeliver after the 200, so a payload that fails in memory (a sender
+    // lane refused one of its messages, or a handler failed) is retried from the ingest
+    // stream like a journaled one. Its processed messages are skipped there by their claims.
+    private void retryFromJournal(byte[] rawPayload, Throwable error) {
+        log.warn("Failed to process webhook payload in memory, retrying from the ingest stream: {}",
+            error.getMessage());
+        if (journal(rawPayload)) {
+            loadShedder.spilled("processing_failed");
+        } else {
+            payloadProcessor.abandon(rawPayload);
         }
     }
 
-    private boolean secureCompare(String a, String b) {
-        if (a == null || b == null || a.length() != b.length()) {
-            return false;
-        }
-
-        int result = 0;
-        for (int i = 0; i < a.length(); i++) {
-            result |= a.charAt(i) ^ b.charAt(i);
-        }
-        return result == 0;
-    }
-
-    private void processPayload(WhatsAppWebhookPayload payload) {
+    private boolean journal(byte[] rawPayload) {
         try {
-            if (!"whatsapp_business_account".equals(payload.object())) {
-                log.debug("Ignoring non-WhatsApp payload: {}", payload.object());
-                return;
-            }
-
-            if (payload.entry() == null || payload.entry().isEmpty()) {
-                log.debug("Empty payload entries");
-                return;
-            }
-
-            for (var entry : payload.entry()) {
-                if (entry.changes() == null) continue;
-
-                for (var change : entry.changes()) {
-                    if (change.value() == null) continue;
-
-                    // Process messages
-                    if (change.value().messages() != null) {
-                        for (var message : change.value().messages()) {
-                            processMessage(message, change.value());
-                        }
-                    }
-
-                    // Process status updates
-                    if (change.value().statuses() != null) {
-                        for (var status : change.value().statuses()) {
-                            processStatus(status);
-                        }
-                    }
-                }
-            }
+            ingestQueue.append(rawPayload);
+            return true;
         } catch (Exception e) {
-            log.error("Error processing webhook payload", e);
-        }
-    }
-
-    private void processMessage(
-        WhatsAppWebhookPayload.Message message,
-        WhatsAppWebhookPayload.Value value
-    ) {
-        log.info("Processing message id={}, type={}", message.id(), message.type());
-
-        String senderName = null;
-        if (value.contacts() != null && !value.contacts().isEmpty()) {
-            var contact = value.contacts().getFirst();
-            if (contact.profile() != null) {
-                senderName = contact.profile().name();
-            }
+            log.error("Failed to journal webhook payload", e);
+            return false;
         }
-
-        messageProcessingService.processIncomingMessage(message, senderName);
-    }
-
-    private void processStatus(WhatsAppWebhookPayload.Status status) {
-        log.debug("Message status update: id={}, status={}",
-            status.id(), status.status());
     }
 }
@@ -116,6 +116,24 @@ public class GlobalExceptionHandler {
             ));
     }
 
+    @ExceptionHandler(WebhookOverloadException.class)
+    public ResponseEntity<ApiErrorResponse> handleWebhookOverload(
+        WebhookOverloadException ex,
+        HttpServletRequest request
+    ) {
+        log.warn("{}, asking Meta to retry in {}s", ex.getMessage(), ex.getRetryAfterSeconds());
+        HttpStatus status = HttpStatus.valueOf(ex.getStatus());
+        return ResponseEntity
+            .status(status)
+            .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
+            .body(ApiErrorResponse.of(
+                status.value(),
+                status.getReasonPhrase(),
+                "Webhook temporarily overloaded",
+                request.getRequestURI()
+            ));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiErrorResponse> handleValidationErrors(
         MethodArgumentNotValidException ex,
@@ -22,6 +22,10 @@ public class MPesaException extends PesaTalkException {
         return new MPesaException("MPESA_STK_PUSH_FAILED", "STK Push failed: " + resultDesc);
     }
 
+    public static MPesaException stkQueryFailed(String details) {
+        return new MPesaException("MPESA_STK_QUERY_FAILED", "STK Push query failed: " + details);
+    }
+
     public static MPesaException timeout() {
         return new MPesaException("MPESA_TIMEOUT", "MPesa API request timed out");
     }
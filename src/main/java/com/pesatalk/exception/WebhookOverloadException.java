@@ -0,0 +1,25 @@
+package com.pesatalk.exception;
+
+public class WebhookOverloadException extends PesaTalkException {
+
+    private final int status;
+    private final long retryAfterSeconds;
+
+    public WebhookOverloadException(String message, int status, long retryAfterSeconds) {
+        super("WEBHOOK_OVERLOADED", message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public static WebhookOverloadException shed(String reason, int status, long retryAfterSeconds) {
+        return new WebhookOverloadException("Webhook shed: " + reason, status, retryAfterSeconds);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
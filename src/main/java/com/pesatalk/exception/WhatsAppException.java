@@ -0,0 +1,28 @@
+package com.pesatalk.exception;
+
+import org.springframework.http.HttpStatusCode;
+
+public class WhatsAppException extends PesaTalkException {
+
+    private final int statusCode;
+
+    public WhatsAppException(String errorCode, String message, int statusCode) {
+        super(errorCode, message);
+        this.statusCode = statusCode;
+    }
+
+    public static WhatsAppException apiError(HttpStatusCode status, String body) {
+        return new WhatsAppException("WHATSAPP_API_ERROR",
+            "WhatsApp API error: " + status + " " + body, status.value());
+    }
+
+    // A 4xx other than 429 means Meta refused this message (bad recipient, expired
+    // session window, invalid template) and sending it again will not help
+    public boolean isRejected() {
+        return statusCode >= 400 && statusCode < 500 && statusCode != 429;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -3,8 +3,17 @@ package com.pesatalk.integration.mpesa;
 import com.pesatalk.exception.MPesaException;
 import com.pesatalk.integration.mpesa.dto.STKPushRequest;
 import com.pesatalk.integration.mpesa.dto.STKPushResponse;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
+import com.pesatalk.integration.mpesa.dto.STKQueryRequest;
+import com.pesatalk.integration.mpesa.dto.STKQueryResponse;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.ratelimiter.operator.RateLimiterOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.retry.RetryRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,6 +22,7 @@ import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
@@ -20,24 +30,37 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Base64;
+import java.util.concurrent.TimeoutException;
 
 @Component
 public class MPesaClient {
 
     private static final Logger log = LoggerFactory.getLogger(MPesaClient.class);
     private static final String STK_PUSH_ENDPOINT = "/mpesa/stkpush/v1/processrequest";
+    private static final String STK_QUERY_ENDPOINT = "/mpesa/stkpushquery/v1/query";
     private static final DateTimeFormatter TIMESTAMP_FORMAT =
         DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final String RESILIENCE_INSTANCE = "mpesa";
+    private static final String QUERY_RESILIENCE_INSTANCE = "mpesa-query";
 
     private final WebClient webClient;
     private final MPesaAuthService authService;
     private final String shortcode;
     private final String passkey;
     private final String callbackUrl;
+    private final io.github.resilience4j.circuitbreaker.CircuitBreaker circuitBreaker;
+    private final io.github.resilience4j.retry.Retry retry;
+    private final io.github.resilience4j.ratelimiter.RateLimiter queryRateLimiter;
+    private final io.github.resilience4j.circuitbreaker.CircuitBreaker queryCircuitBreaker;
+    private final io.github.resilience4j.bulkhead.Bulkhead bulkhead;
 
     public MPesaClient(
         WebClient.Builder webClientBuilder,
         MPesaAuthService authService,
+        CircuitBreakerRegistry circuitBreakerRegistry,
+        RetryRegistry retryRegistry,
+        RateLimiterRegistry rateLimiterRegistry,
+        BulkheadRegistry bulkheadRegistry,
         @Value("${mpesa.api.base-url}") String baseUrl,
         @Value("${mpesa.api.shortcode}") String shortcode,
         @Value("${mpesa.api.passkey}") String passkey,
@@ -48,11 +71,32 @@ public class MPesaClient {
         this.shortcode = shortcode;
         this.passkey = passkey;
         this.callbackUrl = callbackUrl;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(RESILIENCE_INSTANCE);
+        this.retry = retryRegistry.retry(RESILIENCE_INSTANCE);
+        this.queryRateLimiter = rateLimiterRegistry.rateLimiter(QUERY_RESILIENCE_INSTANCE);
+        this.queryCircuitBreaker = circuitBreakerRegistry.circuitBreaker(QUERY_RESILIENCE_INSTANCE);
+        this.bulkhead = bulkheadRegistry.bulkhead(RESILIENCE_INSTANCE);
     }
 
-    @CircuitBreaker(name = "mpesa", fallbackMethod = "stkPushFallback")
-    @Retry(name = "mpesa")
-    public STKPushResponse initiateSTKPush(
+    // Guarded by the mpesa bulkhead, circuit breaker and retry instances; an open circuit
+    // surfaces as MPesaException.serviceUnavailable()
+    public Mono<STKPushResponse> initiateSTKPushReactive(
+        String phoneNumber,
+        BigDecimal amount,
+        String accountReference,
+        String description
+    ) {
+        return stkPush(phoneNumber, amount, accountReference, description)
+            .transformDeferred(BulkheadOperator.of(bulkhead))
+            .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+            .transformDeferred(RetryOperator.of(retry))
+            .onErrorMap(CallNotPermittedException.class, e -> {
+                log.error("STK Push circuit breaker activated: {}", e.getMessage());
+                return MPesaException.serviceUnavailable();
+            });
+    }
+
+    private Mono<STKPushResponse> stkPush(
         String phoneNumber,
         BigDecimal amount,
         String accountReference,
@@ -78,52 +122,83 @@ public class MPesaClient {
             .transactionDesc(truncate(description, 13))
             .build();
 
-        log.info("Initiating STK Push for phone [REDACTED], amount: {}", amount);
+        // The token is cached, but a miss performs a blocking OAuth call
+        return Mono.fromCallable(authService::getAccessToken)
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMap(accessToken -> {
+                log.info("Initiating STK Push for phone [REDACTED], amount: {}", amount);
+
+                return webClient.post()
+                    .uri(STK_PUSH_ENDPOINT)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("Authorization", "Bearer " + accessToken)
+                    .bodyValue(request)
+                    .retrieve()
+                    .onStatus(HttpStatusCode::isError, res ->
+                        res.bodyToMono(String.class)
+                            .flatMap(body -> {
+                                log.error("MPesa STK Push error: status={}, body={}",
+                                    res.statusCode(), body);
+                                return Mono.error(MPesaException.stkPushFailed(body));
+                            })
+                    )
+                    .bodyToMono(STKPushResponse.class)
+                    .timeout(Duration.ofSeconds(45));
+            })
+            .switchIfEmpty(Mono.error(() -> MPesaException.stkPushFailed("Empty response from MPesa")))
+            .flatMap(response -> {
+                if (response.hasError()) {
+                    log.error("STK Push failed: {}", response.getErrorDetails());
+                    return Mono.error(MPesaException.stkPushFailed(response.getErrorDetails()));
+                }
+
+                log.info("STK Push initiated successfully: merchantRequestId={}, checkoutRequestId={}",
+                    response.merchantRequestID(), response.checkoutRequestID());
+                return Mono.just(response);
+            })
+            .onErrorMap(e -> !(e instanceof MPesaException), e -> {
+                log.error("STK Push request failed: {}", e.getMessage(), e);
+                if (e instanceof TimeoutException
+                    || (e.getMessage() != null && e.getMessage().contains("timeout"))) {
+                    return MPesaException.timeout();
+                }
+                return MPesaException.stkPushFailed(e.getMessage());
+            });
+    }
 
-        String accessToken = authService.getAccessToken();
+    // Asks Daraja for the outcome of an STK push, for pushes whose callback never came.
+    // Held to the mpesa-query rate limit, which Daraja enforces per app, and behind its own
+    // circuit breaker so failing queries cannot open the one guarding new STK pushes.
+    public Mono<STKQueryResponse> querySTKPushStatus(String checkoutRequestId) {
+        String timestamp = LocalDateTime.now().format(TIMESTAMP_FORMAT);
+        STKQueryRequest request = new STKQueryRequest(
+            shortcode, generatePassword(timestamp), timestamp, checkoutRequestId);
 
-        try {
-            STKPushResponse response = webClient.post()
-                .uri(STK_PUSH_ENDPOINT)
+        return Mono.fromCallable(authService::getAccessToken)
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMap(accessToken -> webClient.post()
+                .uri(STK_QUERY_ENDPOINT)
                 .contentType(MediaType.APPLICATION_JSON)
                 .header("Authorization", "Bearer " + accessToken)
                 .bodyValue(request)
-                .retrieve()
-                .onStatus(HttpStatusCode::isError, res ->
-                    res.bodyToMono(String.class)
-                        .flatMap(body -> {
-                            log.error("MPesa STK Push error: status={}, body={}",
-                                res.statusCode(), body);
-                            return Mono.error(MPesaException.stkPushFailed(body));
-                        })
+                .exchangeToMono(res -> res.bodyToMono(STKQueryResponse.class)
+                    .onErrorResume(e -> Mono.empty())
+                    .filter(response -> !res.statusCode().isError() || response.errorCode() != null)
+                    .switchIfEmpty(Mono.error(() -> MPesaException.stkQueryFailed("HTTP " + res.statusCode())))
                 )
-                .bodyToMono(STKPushResponse.class)
-                .timeout(Duration.ofSeconds(45))
-                .block();
-
-            if (response == null) {
-                throw MPesaException.stkPushFailed("Empty response from MPesa");
-            }
-
-            if (response.hasError()) {
-                log.error("STK Push failed: {}", response.getErrorDetails());
-                throw MPesaException.stkPushFailed(response.getErrorDetails());
-            }
-
-            log.info("STK Push initiated successfully: merchantRequestId={}, checkoutRequestId={}",
-                response.merchantRequestID(), response.checkoutRequestID());
-
-            return response;
-
-        } catch (MPesaException e) {
-            throw e;
-        } catch (Exception e) {
-            log.error("STK Push request failed: {}", e.getMessage(), e);
-            if (e.getMessage() != null && e.getMessage().contains("timeout")) {
-                throw MPesaException.timeout();
-            }
-            throw MPesaException.stkPushFailed(e.getMessage());
-        }
+                .timeout(Duration.ofSeconds(30)))
+            .flatMap(response -> {
+                if (response.isStillProcessing() || response.hasResult()) {
+                    return Mono.just(response);
+                }
+                log.warn("STK Push query for {} failed: {}", checkoutRequestId,
+                    response.errorMessage() != null ? response.errorMessage() : response.responseDescription());
+                return Mono.<STKQueryResponse>error(MPesaException.stkQueryFailed(
+                    response.errorCode() != null ? response.errorCode() : response.responseCode()));
+            })
+            .transformDeferred(RateLimiterOperator.of(queryRateLimiter))
+            .transformDeferred(CircuitBreakerOperator.of(queryCircuitBreaker))
+            .onErrorMap(CallNotPermittedException.class, e -> MPesaException.serviceUnavailable());
     }
 
     private String generatePassword(String timestamp) {
@@ -154,16 +229,4 @@ public class MPesaClient {
         if (value == null) return "";
         return value.length() > maxLength ? value.substring(0, maxLength) : value;
     }
-
-    @SuppressWarnings("unused")
-    private STKPushResponse stkPushFallback(
-        String phoneNumber,
-        BigDecimal amount,
-        String accountReference,
-        String description,
-        Throwable throwable
-    ) {
-        log.error("STK Push circuit breaker activated: {}", throwable.getMessage());
-        throw MPesaException.serviceUnavailable();
-    }
 }
@@ -0,0 +1,10 @@
+package com.pesatalk.integration.mpesa.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record STKQueryRequest(
+    @JsonProperty("BusinessShortCode") String businessShortCode,
+    @JsonProperty("Password") String password,
+    @JsonProperty("Timestamp") String timestamp,
+    @JsonProperty("CheckoutRequestID") String checkoutRequestID
+) {}
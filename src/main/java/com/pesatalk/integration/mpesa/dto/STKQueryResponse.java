@@ -0,0 +1,40 @@
+package com.pesatalk.integration.mpesa.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// Daraja answers a query for a push the customer has not acted on yet with an HTTP 500
+// carrying errorCode 500.001.1001, so that case is a response here, not an error
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record STKQueryResponse(
+    @JsonProperty("ResponseCode") String responseCode,
+    @JsonProperty("ResponseDescription") String responseDescription,
+    @JsonProperty("MerchantRequestID") String merchantRequestID,
+    @JsonProperty("CheckoutRequestID") String checkoutRequestID,
+    @JsonProperty("ResultCode") String resultCode,
+    @JsonProperty("ResultDesc") String resultDesc,
+    @JsonProperty("errorCode") String errorCode,
+    @JsonProperty("errorMessage") String errorMessage
+) {
+    private static final String STILL_PROCESSING = "500.001.1001";
+
+    public boolean isStillProcessing() {
+        return STILL_PROCESSING.equals(errorCode);
+    }
+
+    public boolean hasResult() {
+        return "0".equals(responseCode) && resultCode != null;
+    }
+
+    // The query result in callback form, for TransactionService.processSTKCallback. The
+    // query carries no metadata, so a success arrives without a receipt number.
+    public STKCallbackPayload toCallback() {
+        return new STKCallbackPayload(new STKCallbackPayload.Body(new STKCallbackPayload.STKCallback(
+            merchantRequestID,
+            checkoutRequestID,
+            Integer.valueOf(resultCode.trim()),
+            resultDesc,
+            null
+        )));
+    }
+}
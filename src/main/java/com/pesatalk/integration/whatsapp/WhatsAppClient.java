@@ -1,8 +1,16 @@
 package com.pesatalk.integration.whatsapp;
 
+import com.pesatalk.exception.WhatsAppException;
 import com.pesatalk.integration.whatsapp.dto.WhatsAppMessageRequest;
 import com.pesatalk.integration.whatsapp.dto.WhatsAppMessageResponse;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.retry.RetryRegistry;
 import io.github.resilience4j.retry.annotation.Retry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,12 +28,19 @@ import java.util.List;
 public class WhatsAppClient {
 
     private static final Logger log = LoggerFactory.getLogger(WhatsAppClient.class);
+    private static final String RESILIENCE_INSTANCE = "whatsapp";
 
     private final WebClient webClient;
     private final String phoneNumberId;
+    private final io.github.resilience4j.circuitbreaker.CircuitBreaker circuitBreaker;
+    private final io.github.resilience4j.retry.Retry retry;
+    private final io.github.resilience4j.bulkhead.Bulkhead bulkhead;
 
     public WhatsAppClient(
         WebClient.Builder webClientBuilder,
+        CircuitBreakerRegistry circuitBreakerRegistry,
+        RetryRegistry retryRegistry,
+        BulkheadRegistry bulkheadRegistry,
         @Value("${whatsapp.api.base-url}") String baseUrl,
         @Value("${whatsapp.api.phone-number-id}") String phoneNumberId,
         @Value("${whatsapp.api.access-token}") String accessToken
@@ -35,10 +50,14 @@ public class WhatsAppClient {
             .baseUrl(baseUrl)
             .defaultHeader("Authorization", "Bearer " + accessToken)
             .build();
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(RESILIENCE_INSTANCE);
+        this.retry = retryRegistry.retry(RESILIENCE_INSTANCE);
+        this.bulkhead = bulkheadRegistry.bulkhead(RESILIENCE_INSTANCE);
     }
 
     @CircuitBreaker(name = "whatsapp", fallbackMethod = "sendMessageFallback")
     @Retry(name = "whatsapp")
+    @Bulkhead(name = "whatsapp")
     public WhatsAppMessageResponse sendTextMessage(String recipientId, String message) {
         WhatsAppMessageRequest request = WhatsAppMessageRequest.textMessage(recipientId, message);
         return sendMessage(request);
@@ -46,6 +65,7 @@ public class WhatsAppClient {
 
     @CircuitBreaker(name = "whatsapp", fallbackMethod = "sendMessageFallback")
     @Retry(name = "whatsapp")
+    @Bulkhead(name = "whatsapp")
     public WhatsAppMessageResponse sendInteractiveButtons(
         String recipientId,
         String bodyText,
@@ -61,6 +81,7 @@ public class WhatsAppClient {
 
     @CircuitBreaker(name = "whatsapp", fallbackMethod = "sendMessageFallback")
     @Retry(name = "whatsapp")
+    @Bulkhead(name = "whatsapp")
     public WhatsAppMessageResponse sendInteractiveList(
         String recipientId,
         String bodyText,
@@ -76,7 +97,46 @@ public class WhatsAppClient {
         return sendMessage(request);
     }
 
+    // Non-blocking variants sharing the same bulkhead, circuit breaker and retry instances
+    // as the annotated methods; failures are left to the caller rather than swallowed
+
+    public Mono<WhatsAppMessageResponse> sendTextMessageReactive(String recipientId, String message) {
+        return sendMessageReactive(WhatsAppMessageRequest.textMessage(recipientId, message));
+    }
+
+    public Mono<WhatsAppMessageResponse> sendInteractiveButtonsReactive(
+        String recipientId,
+        String bodyText,
+        List<WhatsAppMessageRequest.Button> buttons
+    ) {
+        return sendMessageReactive(
+            WhatsAppMessageRequest.interactiveButtons(recipientId, bodyText, buttons)
+        );
+    }
+
+    public Mono<WhatsAppMessageResponse> sendInteractiveListReactive(
+        String recipientId,
+        String bodyText,
+        String buttonText,
+        List<WhatsAppMessageRequest.Section> sections
+    ) {
+        return sendMessageReactive(
+            WhatsAppMessageRequest.interactiveList(recipientId, bodyText, buttonText, sections)
+        );
+    }
+
+    private Mono<WhatsAppMessageResponse> sendMessageReactive(WhatsAppMessageRequest request) {
+        return exchange(request)
+            .transformDeferred(BulkheadOperator.of(bulkhead))
+            .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+            .transformDeferred(RetryOperator.of(retry));
+    }
+
     private WhatsAppMessageResponse sendMessage(WhatsAppMessageRequest request) {
+        return exchange(request).block();
+    }
+
+    private Mono<WhatsAppMessageResponse> exchange(WhatsAppMessageRequest request) {
         String endpoint = "/" + phoneNumberId + "/messages";
 
         log.debug("Sending WhatsApp message to: {}", request.to());
@@ -91,14 +151,11 @@ public class WhatsAppClient {
                     .flatMap(body -> {
                         log.error("WhatsApp API error: status={}, body={}",
                             response.statusCode(), body);
-                        return Mono.error(new RuntimeException(
-                            "WhatsApp API error: " + response.statusCode()
-                        ));
+                        return Mono.error(WhatsAppException.apiError(response.statusCode(), body));
                     })
             )
             .bodyToMono(WhatsAppMessageResponse.class)
-            .timeout(Duration.ofSeconds(30))
-            .block();
+            .timeout(Duration.ofSeconds(30));
     }
 
     @SuppressWarnings("unused")
@@ -97,7 +97,14 @@ public record WhatsAppWebhookPayload(
         @JsonProperty("timestamp") String timestamp,
         @JsonProperty("recipient_id") String recipientId,
         @JsonProperty("conversation") Conversation conversation,
-        @JsonProperty("pricing") Pricing pricing
+        @JsonProperty("pricing") Pricing pricing,
+        @JsonProperty("errors") List<StatusError> errors
+    ) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record StatusError(
+        @JsonProperty("code") Integer code,
+        @JsonProperty("title") String title
     ) {}
 
     @JsonIgnoreProperties(ignoreUnknown = true)
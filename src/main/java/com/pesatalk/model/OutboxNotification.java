@@ -0,0 +1,82 @@
+package com.pesatalk.model;
+
+import com.pesatalk.model.enums.NotificationStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// Not audited: rows are delivery bookkeeping, removed once sent and past retention
+@Entity
+@Table(name = "notification_outbox", indexes = {
+    @Index(name = "idx_notification_outbox_status_created", columnList = "status, created_at"),
+    @Index(name = "idx_notification_outbox_recipient", columnList = "recipient_whatsapp_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxNotification extends BaseEntity {
+
+    @Column(name = "recipient_whatsapp_id", nullable = false, length = 50)
+    private String recipientWhatsAppId;
+
+    @Column(name = "body", nullable = false)
+    private String body;
+
+    // Reply buttons as JSON; null for a plain text message
+    @Column(name = "buttons")
+    private String buttons;
+
+    @Column(name = "dedup_key", unique = true, length = 100)
+    private String dedupKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    @Builder.Default
+    private NotificationStatus status = NotificationStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "whatsapp_message_id", length = 100)
+    private String whatsappMessageId;
+
+    @Column(name = "sent_at")
+    private Instant sentAt;
+
+    public void markSent(String messageId) {
+        this.status = NotificationStatus.SENT;
+        this.whatsappMessageId = messageId;
+        this.sentAt = Instant.now();
+        this.lastError = null;
+    }
+
+    // Schedules the next attempt, or gives up once maxAttempts have been made
+    public void markAttemptFailed(String error, int maxAttempts, Instant nextAttemptAt) {
+        this.attempts++;
+        this.lastError = error != null && error.length() > 500 ? error.substring(0, 500) : error;
+        if (this.attempts >= maxAttempts) {
+            this.status = NotificationStatus.FAILED;
+        } else {
+            this.nextAttemptAt = nextAttemptAt;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.pesatalk.model.enums;
+
+public enum NotificationStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
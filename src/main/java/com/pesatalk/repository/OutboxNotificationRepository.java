@@ -0,0 +1,58 @@
+package com.pesatalk.repository;
+
+import com.pesatalk.model.OutboxNotification;
+import com.pesatalk.model.enums.NotificationStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Repository
+public interface OutboxNotificationRepository extends JpaRepository<OutboxNotification, UUID> {
+
+    boolean existsByDedupKey(String dedupKey);
+
+    @Query("SELECT n.dedupKey FROM OutboxNotification n WHERE n.dedupKey IN :dedupKeys")
+    Set<String> findExistingDedupKeys(@Param("dedupKeys") Collection<String> dedupKeys);
+
+    // Due messages oldest first, so each recipient's come back in the order they were
+    // written. A recipient whose oldest pending message is backing off is left out
+    // entirely, so nothing queued behind it can overtake it.
+    @Query("""
+        SELECT n FROM OutboxNotification n
+        WHERE n.status = :status
+        AND n.nextAttemptAt <= :now
+        AND NOT EXISTS (
+            SELECT e.id FROM OutboxNotification e
+            WHERE e.recipientWhatsAppId = n.recipientWhatsAppId
+            AND e.status = :status
+            AND e.nextAttemptAt > :now
+            AND (e.createdAt < n.createdAt OR (e.createdAt = n.createdAt AND e.id < n.id))
+        )
+        ORDER BY n.createdAt, n.id
+        """)
+    List<OutboxNotification> findDueInOrder(
+        @Param("status") NotificationStatus status,
+        @Param("now") Instant now,
+        Pageable pageable
+    );
+
+    @Modifying
+    @Query("""
+        DELETE FROM OutboxNotification n
+        WHERE n.status = :status
+        AND n.updatedAt < :cutoff
+        """)
+    int deleteByStatusUpdatedBefore(
+        @Param("status") NotificationStatus status,
+        @Param("cutoff") Instant cutoff
+    );
+}
@@ -6,12 +6,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
@@ -53,38 +55,65 @@ public interface TransactionRepository extends JpaRepository<Transaction, UUID>
     );
 
     @Query("""
-        SELECT t FROM Transaction t
+        SELECT t.id FROM Transaction t
         WHERE t.status = :status
-        AND t.confirmationExpiresAt < :now
+        AND t.updatedAt < :cutoff
+        ORDER BY t.updatedAt
         """)
-    List<Transaction> findExpiredPendingConfirmations(
+    List<UUID> findIdsByStatusUpdatedBefore(
         @Param("status") TransactionStatus status,
-        @Param("now") Instant now
+        @Param("cutoff") Instant cutoff,
+        Pageable pageable
     );
 
     @Query("""
-        SELECT t FROM Transaction t
+        SELECT t.checkoutRequestId FROM Transaction t
         WHERE t.status = :status
         AND t.stkPushedAt < :cutoff
+        ORDER BY t.stkPushedAt
         """)
-    List<Transaction> findStaleProcessingTransactions(
+    List<String> findCheckoutRequestIdsPushedBefore(
         @Param("status") TransactionStatus status,
-        @Param("cutoff") Instant cutoff
+        @Param("cutoff") Instant cutoff,
+        Pageable pageable
     );
 
-    @Modifying
+    // Locks up to a page of overdue confirmations with ids after :afterId, in id order, for
+    // the expiry sweep to transition. Rows locked by a confirm or cancel in flight are
+    // skipped rather than waited on (lock timeout -2 is SKIP LOCKED); the status check in
+    // that request or the next run settles them. The status is a literal so the planner
+    // can use the partial index on it.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
     @Query("""
-        UPDATE Transaction t
-        SET t.status = :newStatus, t.failedAt = :now, t.failureReason = :reason
-        WHERE t.id IN :ids
-        AND t.status = :currentStatus
+        SELECT t FROM Transaction t
+        JOIN FETCH t.sender
+        WHERE t.status = com.pesatalk.model.enums.TransactionStatus.PENDING_CONFIRMATION
+        AND t.confirmationExpiresAt < :now
+        AND t.id > :afterId
+        ORDER BY t.id
         """)
-    int bulkUpdateExpiredTransactions(
-        @Param("ids") List<UUID> ids,
-        @Param("currentStatus") TransactionStatus currentStatus,
-        @Param("newStatus") TransactionStatus newStatus,
+    List<Transaction> findExpiredConfirmationsForUpdate(
         @Param("now") Instant now,
-        @Param("reason") String reason
+        @Param("afterId") UUID afterId,
+        Pageable pageable
+    );
+
+    // As findExpiredConfirmationsForUpdate, for STK pushes with no callback since :cutoff
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+        SELECT t FROM Transaction t
+        JOIN FETCH t.sender
+        WHERE t.status = com.pesatalk.model.enums.TransactionStatus.STK_PUSHED
+        AND t.stkPushedAt < :cutoff
+        AND t.id > :afterId
+        ORDER BY t.id
+        """)
+    List<Transaction> findStaleSTKPushesForUpdate(
+        @Param("cutoff") Instant cutoff,
+        @Param("afterId") UUID afterId,
+        Pageable pageable
     );
 
     @Query("""
@@ -107,7 +136,7 @@ public interface TransactionRepository extends JpaRepository<Transaction, UUID>
         AND t.createdAt >= :startOfDay
         AND t.status NOT IN :excludedStatuses
         """)
-    java.math.BigDecimal sumDailyTransactionAmount(
+    BigDecimal sumDailyTransactionAmount(
         @Param("senderId") UUID senderId,
         @Param("startOfDay") Instant startOfDay,
         @Param("excludedStatuses") List<TransactionStatus> excludedStatuses
@@ -1,8 +1,6 @@
 package com.pesatalk.service;
 
 import com.pesatalk.exception.TransactionException;
-import com.pesatalk.integration.mpesa.MPesaClient;
-import com.pesatalk.integration.mpesa.dto.STKPushResponse;
 import com.pesatalk.integration.whatsapp.dto.WhatsAppMessageRequest;
 import com.pesatalk.model.Transaction;
 import com.pesatalk.model.User;
@@ -10,6 +8,8 @@ import com.pesatalk.model.enums.TransactionStatus;
 import com.pesatalk.model.enums.TransactionType;
 import com.pesatalk.repository.TransactionRepository;
 import com.pesatalk.service.intent.ConversationContext;
+import com.pesatalk.service.outbox.NotificationOutbox;
+import com.pesatalk.service.scheduler.ConfirmationExpiryQueue;
 import com.pesatalk.service.intent.ParsedIntent;
 import com.pesatalk.util.PhoneNumberUtil;
 import org.slf4j.Logger;
@@ -43,8 +43,10 @@ public class AirtimeService {
 
     private final TransactionRepository transactionRepository;
     private final NotificationService notificationService;
+    private final NotificationOutbox notificationOutbox;
     private final ConversationStateService conversationStateService;
-    private final MPesaClient mpesaClient;
+    private final STKPushDispatcher stkPushDispatcher;
+    private final ConfirmationExpiryQueue confirmationExpiryQueue;
     private final PhoneNumberUtil phoneNumberUtil;
 
     @Value("${transaction.airtime.min-amount:5}")
@@ -56,17 +58,24 @@ public class AirtimeService {
     public AirtimeService(
         TransactionRepository transactionRepository,
         NotificationService notificationService,
+        NotificationOutbox notificationOutbox,
         ConversationStateService conversationStateService,
-        MPesaClient mpesaClient,
+        STKPushDispatcher stkPushDispatcher,
+        ConfirmationExpiryQueue confirmationExpiryQueue,
         PhoneNumberUtil phoneNumberUtil
     ) {
         this.transactionRepository = transactionRepository;
         this.notificationService = notificationService;
+        this.notificationOutbox = notificationOutbox;
         this.conversationStateService = conversationStateService;
-        this.mpesaClient = mpesaClient;
+        this.stkPushDispatcher = stkPushDispatcher;
+        this.confirmationExpiryQueue = confirmationExpiryQueue;
         this.phoneNumberUtil = phoneNumberUtil;
     }
 
+    // Transactional here because initiateAirtimePurchase is called on this, bypassing its
+    // proxy, and the outbox it enqueues to requires a surrounding transaction
+    @Transactional
     public void handleAirtimeIntent(User user, ParsedIntent intent, String whatsAppId) {
         BigDecimal amount = intent.amount();
         String recipientIdentifier = intent.recipientIdentifier();
@@ -135,7 +144,7 @@ public class AirtimeService {
 
         // Check for duplicate
         if (transactionRepository.existsByIdempotencyKey(idempotencyKey)) {
-            notificationService.sendMessage(whatsAppId,
+            notificationOutbox.enqueueMessage(whatsAppId,
                 "You already have a similar pending transaction. Please confirm or cancel it first.");
             return;
         }
@@ -161,6 +170,7 @@ public class AirtimeService {
 
         Transaction saved = transactionRepository.save(transaction);
         log.info("Created airtime transaction: id={}", saved.getId());
+        confirmationExpiryQueue.scheduleAfterCommit(saved.getId(), saved.getConfirmationExpiresAt());
 
         // Send confirmation request
         sendConfirmationRequest(whatsAppId, saved, recipientDisplay, amount);
@@ -180,58 +190,20 @@ public class AirtimeService {
             WhatsAppMessageRequest.Button.of("cancel_" + transaction.getId(), "Cancel")
         );
 
-        notificationService.sendInteractiveButtons(whatsAppId, message, buttons);
+        notificationOutbox.enqueueInteractiveButtons(
+            whatsAppId, message, buttons, "tx:" + transaction.getId() + ":confirm"
+        );
     }
 
+    // For a transaction this caller's transaction has moved to CONFIRMED; the STK push is
+    // sent by a dispatcher worker once that commits
     @Transactional
     public void processConfirmedAirtime(Transaction transaction) {
-        String recipientPhone = phoneNumberUtil.decryptPhoneNumber(
-            transaction.getRecipientPhoneEncrypted()
-        );
-
-        try {
-            transaction.transitionTo(TransactionStatus.PROCESSING);
-            transactionRepository.save(transaction);
-
-            // Initiate STK Push for airtime
-            STKPushResponse response = mpesaClient.initiateSTKPush(
-                recipientPhone,
-                transaction.getAmount(),
-                "Airtime",
-                "PesaTalk Airtime"
-            );
-
-            if (response.isSuccessful()) {
-                transaction.setMerchantRequestId(response.merchantRequestID());
-                transaction.setCheckoutRequestId(response.checkoutRequestID());
-                transaction.transitionTo(TransactionStatus.STK_PUSHED);
-                transactionRepository.save(transaction);
-
-                notificationService.sendMessage(
-                    transaction.getSender().getWhatsAppId(),
-                    "Please enter your MPesa PIN on your phone to complete the airtime purchase."
-                );
-            } else {
-                transaction.transitionTo(TransactionStatus.FAILED);
-                transaction.setFailureReason(response.getErrorDetails());
-                transactionRepository.save(transaction);
-
-                notificationService.sendMessage(
-                    transaction.getSender().getWhatsAppId(),
-                    "Airtime purchase failed: " + response.getErrorDetails()
-                );
-            }
-        } catch (Exception e) {
-            log.error("Error processing airtime transaction {}: {}", transaction.getId(), e.getMessage(), e);
-            transaction.transitionTo(TransactionStatus.FAILED);
-            transaction.setFailureReason("Processing error: " + e.getMessage());
-            transactionRepository.save(transaction);
-
-            notificationService.sendMessage(
-                transaction.getSender().getWhatsAppId(),
-                "An error occurred while processing your airtime purchase. Please try again."
-            );
+        if (transaction.getStatus() != TransactionStatus.CONFIRMED) {
+            log.warn("Airtime transaction {} is {}, not confirmed", transaction.getId(), transaction.getStatus());
+            return;
         }
+        stkPushDispatcher.dispatchAfterCommit(transaction.getId());
     }
 
     private String generateIdempotencyKey(UUID userId, String recipientPhone, BigDecimal amount) {
@@ -0,0 +1,222 @@
+package com.pesatalk.service;
+
+import com.pesatalk.model.Contact;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+// One user's contacts, prepared for matching a typed recipient against their aliases
+// without a DB round trip. Beyond exact matches it tolerates typos within a bounded
+// Damerau-Levenshtein distance ("jon" -> "john"), unfinished names ("wanj" -> "wanjiku")
+// and extra or missing words ("mama mboga" -> "mama"). Immutable once built; holds
+// only encrypted phone numbers.
+public final class ContactAliasIndex {
+
+    public record Candidate(String alias, String phoneNumberEncrypted, double confidence) {}
+
+    private static final double EXACT = 1.0;
+    private static final double ONE_EDIT = 0.9;
+    private static final double ALL_WORDS = 0.85;
+    private static final double TWO_EDITS = 0.8;
+    private static final double PREFIX = 0.8;
+    private static final int MIN_PREFIX_LENGTH = 3;
+
+    // Copied out of the entity so cached indexes never pin a persistence context
+    private record Entry(String alias, String normalized, String[] words, String phoneNumberEncrypted,
+                         String phoneNumberHash, boolean favorite, int transactionCount) {}
+
+    private static final Comparator<Scored> RANKING = Comparator
+        .comparingDouble(Scored::confidence).reversed()
+        .thenComparing(scored -> !scored.entry().favorite())
+        .thenComparing(scored -> -scored.entry().transactionCount());
+
+    private record Scored(Entry entry, double confidence) {}
+
+    private final List<Entry> entries;
+
+    private ContactAliasIndex(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    public static ContactAliasIndex of(List<Contact> contacts) {
+        List<Entry> entries = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            String normalized = normalize(contact.getAlias());
+            if (!normalized.isEmpty()) {
+                entries.add(new Entry(
+                    contact.getAlias(),
+                    normalized,
+                    normalized.split(" "),
+                    contact.getPhoneNumberEncrypted(),
+                    contact.getPhoneNumberHash(),
+                    Boolean.TRUE.equals(contact.getIsFavorite()),
+                    contact.getTransactionCount() != null ? contact.getTransactionCount() : 0
+                ));
+            }
+        }
+        return new ContactAliasIndex(List.copyOf(entries));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Contacts whose alias matches the query with at least minConfidence, best first;
+    // ties go to favourites, then to the most used contact
+    public List<Candidate> search(String query, double minConfidence, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        String[] words = normalized.split(" ");
+
+        List<Scored> scored = new ArrayList<>();
+        for (Entry entry : entries) {
+            double confidence = score(normalized, words, entry);
+            if (confidence >= minConfidence) {
+                scored.add(new Scored(entry, confidence));
+            }
+        }
+        scored.sort(RANKING);
+
+        List<Candidate> candidates = new ArrayList<>(Math.min(limit, scored.size()));
+        for (int i = 0; i < scored.size() && i < limit; i++) {
+            Entry entry = scored.get(i).entry();
+            candidates.add(new Candidate(entry.alias(), entry.phoneNumberEncrypted(), scored.get(i).confidence()));
+        }
+        return candidates;
+    }
+
+    public Optional<String> findAliasByPhoneHash(String phoneNumberHash) {
+        // Entries keep the repository's most-used-first order
+        for (Entry entry : entries) {
+            if (phoneNumberHash.equals(entry.phoneNumberHash())) {
+                return Optional.of(entry.alias());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static double score(String query, String[] queryWords, Entry entry) {
+        String alias = entry.normalized();
+        if (query.equals(alias)) {
+            return EXACT;
+        }
+
+        double best = 0;
+        int maxEdits = maxEdits(alias.length());
+        int distance = boundedDistance(query, alias, maxEdits);
+        if (distance == 1 && maxEdits >= 1) {
+            best = ONE_EDIT;
+        } else if (distance == 2 && maxEdits >= 2) {
+            best = TWO_EDITS;
+        }
+
+        if (best < ALL_WORDS && queryWords.length != entry.words().length
+            && (coversWords(queryWords, entry.words()) || coversWords(entry.words(), queryWords))) {
+            best = ALL_WORDS;
+        }
+
+        if (best < PREFIX && query.length() >= MIN_PREFIX_LENGTH && alias.startsWith(query)) {
+            best = PREFIX;
+        }
+        return best;
+    }
+
+    // True if every word of the shorter side appears, allowing one typo in longer words,
+    // among the words of the longer side
+    private static boolean coversWords(String[] shorter, String[] longer) {
+        if (shorter.length >= longer.length) {
+            return false;
+        }
+        for (String word : shorter) {
+            boolean found = false;
+            for (String candidate : longer) {
+                if (word.equals(candidate)
+                    || (word.length() >= 4 && boundedDistance(word, candidate, 1) == 1)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Short aliases tolerate a single typo, longer ones two
+    private static int maxEdits(int length) {
+        if (length < 3) {
+            return 0;
+        }
+        return length < 6 ? 1 : 2;
+    }
+
+    // Damerau-Levenshtein distance (optimal string alignment) between a and b, or
+    // max + 1 as soon as it is certain to exceed max
+    static int boundedDistance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+        if (max == 0) {
+            return a.equals(b) ? 0 : 1;
+        }
+
+        int[] previous2 = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                char cb = b.charAt(j - 1);
+                int cost = ca == cb ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[m], max + 1);
+    }
+
+    // Lower-cased, with runs of whitespace and punctuation collapsed into single spaces
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && !normalized.isEmpty()) {
+                    normalized.append(' ');
+                }
+                pendingSpace = false;
+                normalized.append(Character.toLowerCase(c));
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+}
@@ -1,15 +1,23 @@
 package com.pesatalk.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.pesatalk.model.Contact;
 import com.pesatalk.model.User;
 import com.pesatalk.repository.ContactRepository;
 import com.pesatalk.repository.UserRepository;
 import com.pesatalk.util.PhoneNumberUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -19,19 +27,39 @@ public class ContactService {
 
     private static final Logger log = LoggerFactory.getLogger(ContactService.class);
     private static final int MAX_CONTACTS_PER_USER = 100;
+    private static final int MAX_SUGGESTIONS = 3;
 
     private final ContactRepository contactRepository;
     private final UserRepository userRepository;
     private final PhoneNumberUtil phoneNumberUtil;
+    private final double minConfidence;
+    private final double minMargin;
+
+    // Alias indexes of recently active users, loaded on first lookup. Writes through this
+    // service invalidate the user's entry; the expiry bounds staleness from other nodes.
+    private final Cache<UUID, ContactAliasIndex> aliasIndexes;
 
     public ContactService(
         ContactRepository contactRepository,
         UserRepository userRepository,
-        PhoneNumberUtil phoneNumberUtil
+        PhoneNumberUtil phoneNumberUtil,
+        MeterRegistry meterRegistry,
+        @Value("${contacts.alias-index.max-users:10000}") long maxIndexedUsers,
+        @Value("${contacts.alias-index.expire-after-write:10m}") Duration indexExpireAfterWrite,
+        @Value("${contacts.fuzzy.min-confidence:0.8}") double minConfidence,
+        @Value("${contacts.fuzzy.min-margin:0.05}") double minMargin
     ) {
         this.contactRepository = contactRepository;
         this.userRepository = userRepository;
         this.phoneNumberUtil = phoneNumberUtil;
+        this.minConfidence = minConfidence;
+        this.minMargin = minMargin;
+        this.aliasIndexes = Caffeine.newBuilder()
+            .maximumSize(maxIndexedUsers)
+            .expireAfterWrite(indexExpireAfterWrite)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, aliasIndexes, "contacts.alias_index");
     }
 
     @Transactional
@@ -64,6 +92,7 @@ public class ContactService {
             .build();
 
         Contact saved = contactRepository.save(contact);
+        invalidateAliasIndex(user.getId());
         log.info("Added contact {} for user {}", saved.getId(), user.getId());
         return saved;
     }
@@ -84,6 +113,31 @@ public class ContactService {
         return contactRepository.findByUserIdAndAliasIgnoreCase(userId, alias.toLowerCase());
     }
 
+    // The contact the typed name most likely refers to, if the best match is confident
+    // and clearly ahead of the runner-up; typos and partial names resolve here too
+    public Optional<ContactAliasIndex.Candidate> resolveAlias(UUID userId, String query) {
+        List<ContactAliasIndex.Candidate> candidates = aliasIndex(userId).search(query, minConfidence, 2);
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+        ContactAliasIndex.Candidate best = candidates.get(0);
+        if (candidates.size() > 1 && best.confidence() - candidates.get(1).confidence() < minMargin) {
+            return Optional.empty();
+        }
+        return Optional.of(best);
+    }
+
+    // Near matches to offer when resolveAlias cannot pick one
+    public List<String> suggestAliases(UUID userId, String query) {
+        return aliasIndex(userId).search(query, minConfidence, MAX_SUGGESTIONS).stream()
+            .map(ContactAliasIndex.Candidate::alias)
+            .toList();
+    }
+
+    public String decryptPhone(ContactAliasIndex.Candidate candidate) {
+        return phoneNumberUtil.decryptPhoneNumber(candidate.phoneNumberEncrypted());
+    }
+
     public String findContactPhoneByAlias(UUID userId, String alias) {
         return findByAlias(userId, alias)
             .map(contact -> phoneNumberUtil.decryptPhoneNumber(contact.getPhoneNumberEncrypted()))
@@ -92,12 +146,7 @@ public class ContactService {
 
     public Optional<String> findContactNameByPhone(UUID userId, String phoneNumber) {
         String phoneHash = phoneNumberUtil.hashPhoneNumber(phoneNumber);
-
-        List<Contact> contacts = contactRepository.findByUserIdOrderByTransactionCountDesc(userId);
-        return contacts.stream()
-            .filter(c -> phoneHash.equals(c.getPhoneNumberHash()))
-            .findFirst()
-            .map(Contact::getAlias);
+        return aliasIndex(userId).findAliasByPhoneHash(phoneHash);
     }
 
     @Transactional
@@ -115,6 +164,7 @@ public class ContactService {
     @Transactional
     public void deleteContact(UUID userId, String alias) {
         contactRepository.deleteByUserIdAndAliasLowercase(userId, alias.toLowerCase());
+        invalidateAliasIndex(userId);
         log.info("Deleted contact {} for user {}", alias, userId);
     }
 
@@ -123,6 +173,25 @@ public class ContactService {
         findByAlias(userId, alias).ifPresent(contact -> {
             contact.setIsFavorite(!contact.getIsFavorite());
             contactRepository.save(contact);
+            invalidateAliasIndex(userId);
         });
     }
+
+    private ContactAliasIndex aliasIndex(UUID userId) {
+        return aliasIndexes.get(userId, id ->
+            ContactAliasIndex.of(contactRepository.findByUserIdOrderByTransactionCountDesc(id)));
+    }
+
+    private void invalidateAliasIndex(UUID userId) {
+        aliasIndexes.invalidate(userId);
+        // Again after commit, in case a lookup reloaded the old rows in between
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    aliasIndexes.invalidate(userId);
+                }
+            });
+        }
+    }
 }
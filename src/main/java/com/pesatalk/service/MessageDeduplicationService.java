@@ -0,0 +1,135 @@
+package com.pesatalk.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+public class MessageDeduplicationService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageDeduplicationService.class);
+    private static final String PROCESSED_MESSAGES_KEY = "processed_messages:";
+    private static final byte[] CLAIMED_VALUE = "claimed".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PROCESSED_VALUE = "1".getBytes(StandardCharsets.UTF_8);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Expiration claimTtl;
+    private final Expiration processedTtl;
+
+    // IDs this node has claimed itself. A hit is a guaranteed duplicate and skips Redis;
+    // a miss proves nothing about other nodes, so it always falls through to the atomic
+    // claim. IDs claimed elsewhere are not cached since their owner may still release them.
+    private final Map<String, Boolean> recentlySeen;
+
+    public MessageDeduplicationService(
+        RedisTemplate<String, Object> redisTemplate,
+        @Value("${webhook.idempotency.claim-ttl:10m}") Duration claimTtl,
+        @Value("${webhook.idempotency.processed-ttl:24h}") Duration processedTtl,
+        @Value("${webhook.idempotency.local-cache-size:10000}") int localCacheSize
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.claimTtl = Expiration.from(claimTtl);
+        this.processedTtl = Expiration.from(processedTtl);
+        this.recentlySeen = localCacheSize > 0 ? boundedMap(localCacheSize) : null;
+    }
+
+    // Atomically claims each ID with SET NX in one pipelined round trip and returns
+    // the ones this caller now owns. Claims expire after claim-ttl if never completed.
+    public Set<String> claim(Collection<String> messageIds) {
+        List<String> candidates = new ArrayList<>(messageIds.size());
+        for (String messageId : new LinkedHashSet<>(messageIds)) {
+            if (seenLocally(messageId)) {
+                log.debug("Skipping already processed message: {}", messageId);
+            } else {
+                candidates.add(messageId);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String messageId : candidates) {
+                connection.stringCommands().set(key(messageId), CLAIMED_VALUE, claimTtl, SetOption.ifAbsent());
+            }
+            return null;
+        });
+
+        Set<String> claimed = new LinkedHashSet<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            String messageId = candidates.get(i);
+            if (Boolean.TRUE.equals(results.get(i))) {
+                rememberLocally(messageId);
+                claimed.add(messageId);
+            } else {
+                log.debug("Skipping already processed message: {}", messageId);
+            }
+        }
+        return claimed;
+    }
+
+    public void markProcessed(String messageId) {
+        redisTemplate.execute((RedisCallback<Boolean>) connection ->
+            connection.stringCommands().set(key(messageId), PROCESSED_VALUE, processedTtl, SetOption.upsert())
+        );
+    }
+
+    // Gives up a claim so the ingest stream's redelivery of a failed message is processed again
+    public void release(String messageId) {
+        forgetLocally(messageId);
+        redisTemplate.delete(PROCESSED_MESSAGES_KEY + messageId);
+    }
+
+    private byte[] key(String messageId) {
+        return (PROCESSED_MESSAGES_KEY + messageId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean seenLocally(String messageId) {
+        if (recentlySeen == null) {
+            return false;
+        }
+        synchronized (recentlySeen) {
+            return recentlySeen.containsKey(messageId);
+        }
+    }
+
+    private void rememberLocally(String messageId) {
+        if (recentlySeen != null) {
+            synchronized (recentlySeen) {
+                recentlySeen.put(messageId, Boolean.TRUE);
+            }
+        }
+    }
+
+    private void forgetLocally(String messageId) {
+        if (recentlySeen != null) {
+            synchronized (recentlySeen) {
+                recentlySeen.remove(messageId);
+            }
+        }
+    }
+
+    private static Map<String, Boolean> boundedMap(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+}
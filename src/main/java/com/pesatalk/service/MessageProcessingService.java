@@ -5,53 +5,109 @@ import com.pesatalk.integration.whatsapp.dto.WhatsAppWebhookPayload;
 import com.pesatalk.model.User;
 import com.pesatalk.model.enums.Intent;
 import com.pesatalk.model.enums.MessageType;
+import com.pesatalk.service.intent.ConversationContext;
+import com.pesatalk.service.intent.IntentParsingOrchestrator;
+import com.pesatalk.service.intent.ParsedIntent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class MessageProcessingService {
 
     private static final Logger log = LoggerFactory.getLogger(MessageProcessingService.class);
-    private static final String PROCESSED_MESSAGES_KEY = "processed_messages:";
-    private static final Duration MESSAGE_DEDUP_TTL = Duration.ofHours(24);
 
     private final UserService userService;
-    private final IntentParsingService intentParsingService;
+    private final IntentParsingOrchestrator intentParsingOrchestrator;
+    private final ConversationStateService conversationStateService;
     private final TransactionService transactionService;
     private final NotificationService notificationService;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final MessageDeduplicationService deduplicationService;
 
     public MessageProcessingService(
         UserService userService,
-        IntentParsingService intentParsingService,
+        IntentParsingOrchestrator intentParsingOrchestrator,
+        ConversationStateService conversationStateService,
         TransactionService transactionService,
         NotificationService notificationService,
-        RedisTemplate<String, Object> redisTemplate
+        MessageDeduplicationService deduplicationService
     ) {
         this.userService = userService;
-        this.intentParsingService = intentParsingService;
+        this.intentParsingOrchestrator = intentParsingOrchestrator;
+        this.conversationStateService = conversationStateService;
         this.transactionService = transactionService;
         this.notificationService = notificationService;
-        this.redisTemplate = redisTemplate;
+        this.deduplicationService = deduplicationService;
     }
 
+    // Callers must hold the message's claim from MessageDeduplicationService.claim. An
+    // unexpected failure releases the claim and is rethrown, so the journaled payload is
+    // left unacknowledged and redelivered from the ingest stream. The sender hears of the
+    // failure only when the payload is dead-lettered, not on every attempt.
     public void processIncomingMessage(WhatsAppWebhookPayload.Message message, String senderName) {
-        String messageId = message.id();
+        handle(List.of(message.id()), message.from(), () -> parseMessage(message, senderName));
+    }
 
-        // Idempotency check - skip already processed messages
-        if (isMessageProcessed(messageId)) {
-            log.debug("Skipping already processed message: {}", messageId);
+    // Handles a burst of text messages from one sender as a single request, e.g. "send",
+    // "500", "to john". Falls back to one at a time when the merged text is not understood,
+    // so coalescing never answers worse than the individual messages would have been.
+    public void processIncomingMessages(List<WhatsAppWebhookPayload.Message> messages, String senderName) {
+        WhatsAppWebhookPayload.Message last = messages.getLast();
+        String merged = messages.stream()
+            .map(message -> message.text() != null ? message.text().body() : null)
+            .filter(Objects::nonNull)
+            .map(String::trim)
+            .collect(Collectors.joining(" "));
+
+        ParsedIntent parsedIntent;
+        try {
+            ConversationContext context = conversationStateService.get(last.from()).orElse(null);
+            parsedIntent = intentParsingOrchestrator.parseWithContext(merged, context);
+        } catch (Exception e) {
+            log.warn("Failed to parse coalesced messages, handling them one by one: {}", e.getMessage());
+            parsedIntent = ParsedIntent.unknown();
+        }
+
+        if (parsedIntent.intent() == Intent.UNKNOWN) {
+            // Every message gets its turn even if an earlier one fails
+            RuntimeException failure = null;
+            for (WhatsAppWebhookPayload.Message message : messages) {
+                try {
+                    processIncomingMessage(message, senderName);
+                } catch (RuntimeException e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
             return;
         }
 
+        ParsedMessage parsedMessage = ParsedMessage.builder()
+            .messageId(last.id())
+            .senderWhatsAppId(last.from())
+            .senderPhoneNumber(last.from())
+            .senderName(senderName)
+            .messageType(MessageType.TEXT)
+            .rawContent(merged)
+            .intent(parsedIntent.intent())
+            .amount(parsedIntent.amount())
+            .recipientIdentifier(parsedIntent.recipientIdentifier())
+            .build();
+        handle(messages.stream().map(WhatsAppWebhookPayload.Message::id).toList(), last.from(), () -> parsedMessage);
+    }
+
+    private void handle(List<String> messageIds, String from, Supplier<ParsedMessage> parser) {
         try {
             // Parse the message
-            ParsedMessage parsedMessage = parseMessage(message, senderName);
+            ParsedMessage parsedMessage = parser.get();
             log.info("Parsed message: intent={}, amount={}, recipient={}",
                 parsedMessage.intent(),
                 parsedMessage.amount(),
@@ -71,15 +127,24 @@ public class MessageProcessingService {
             // Route to appropriate handler based on intent
             handleIntent(parsedMessage, user);
 
-            // Mark message as processed
-            markMessageProcessed(messageId);
+        } catch (RuntimeException e) {
+            // No reply yet: the payload is retried from the ingest stream, and the sender is
+            // told it failed only once it is dead-lettered (WebhookPayloadProcessor.abandon).
+            // A handler's writes and outbox replies commit in one transaction and its direct
+            // replies are sent last, so a failed attempt leaves nothing for the retry to repeat.
+            log.error("Error processing messages {} from {}: {}", messageIds, from, e.getMessage(), e);
+            messageIds.forEach(this::releaseClaim);
+            throw e;
+        }
 
-        } catch (Exception e) {
-            log.error("Error processing message {}: {}", messageId, e.getMessage(), e);
-            notificationService.sendErrorMessage(
-                message.from(),
-                "Sorry, we encountered an error processing your request. Please try again."
-            );
+        // The request was handled, so failing here must not rethrow and run it again; the
+        // claim stays held until claim-ttl, outliving the acknowledged payload
+        for (String messageId : messageIds) {
+            try {
+                deduplicationService.markProcessed(messageId);
+            } catch (Exception e) {
+                log.warn("Failed to mark message {} processed: {}", messageId, e.getMessage());
+            }
         }
     }
 
@@ -95,24 +160,30 @@ public class MessageProcessingService {
             .messageType(messageType)
             .rawContent(rawContent);
 
-        // Handle interactive responses
+        // Every kind of message goes through the same parsing engine
+        ParsedIntent parsedIntent = null;
         if (messageType == MessageType.INTERACTIVE_BUTTON_REPLY && message.interactive() != null) {
             var buttonReply = message.interactive().buttonReply();
             if (buttonReply != null) {
                 builder.buttonId(buttonReply.id());
-                builder.intent(parseButtonIntent(buttonReply.id()));
+                parsedIntent = intentParsingOrchestrator.parseButtonResponse(buttonReply.id());
             }
         } else if (messageType == MessageType.INTERACTIVE_LIST_REPLY && message.interactive() != null) {
             var listReply = message.interactive().listReply();
             if (listReply != null) {
                 builder.listItemId(listReply.id());
+                parsedIntent = intentParsingOrchestrator.parseListResponse(listReply.id());
             }
         } else if (messageType == MessageType.TEXT && rawContent != null) {
-            // Parse natural language intent
-            var intentResult = intentParsingService.parseIntent(rawContent);
-            builder.intent(intentResult.intent())
-                   .amount(intentResult.amount())
-                   .recipientIdentifier(intentResult.recipientIdentifier());
+            // Parse natural language intent, as an answer to any pending question first
+            ConversationContext context = conversationStateService.get(message.from()).orElse(null);
+            parsedIntent = intentParsingOrchestrator.parseWithContext(rawContent, context);
+        }
+
+        if (parsedIntent != null) {
+            builder.intent(parsedIntent.intent())
+                   .amount(parsedIntent.amount())
+                   .recipientIdentifier(parsedIntent.recipientIdentifier());
         }
 
         return builder.build();
@@ -150,16 +221,6 @@ public class MessageProcessingService {
         };
     }
 
-    private Intent parseButtonIntent(String buttonId) {
-        if (buttonId == null) return Intent.UNKNOWN;
-
-        return switch (buttonId) {
-            case String s when s.startsWith("confirm_") -> Intent.CONFIRM_TRANSACTION;
-            case String s when s.startsWith("cancel_") -> Intent.CANCEL_TRANSACTION;
-            default -> Intent.UNKNOWN;
-        };
-    }
-
     private void handleIntent(ParsedMessage message, User user) {
         Intent intent = message.intent() != null ? message.intent() : Intent.UNKNOWN;
 
@@ -291,13 +352,11 @@ public class MessageProcessingService {
         return null;
     }
 
-    private boolean isMessageProcessed(String messageId) {
-        String key = PROCESSED_MESSAGES_KEY + messageId;
-        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
-    }
-
-    private void markMessageProcessed(String messageId) {
-        String key = PROCESSED_MESSAGES_KEY + messageId;
-        redisTemplate.opsForValue().set(key, "1", MESSAGE_DEDUP_TTL);
+    private void releaseClaim(String messageId) {
+        try {
+            deduplicationService.release(messageId);
+        } catch (Exception e) {
+            log.warn("Failed to release claim for message {}: {}", messageId, e.getMessage());
+        }
     }
 }
@@ -0,0 +1,243 @@
+package com.pesatalk.service;
+
+import com.pesatalk.integration.whatsapp.dto.WhatsAppWebhookPayload;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class MessageStatusService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageStatusService.class);
+    private static final String STATUS_KEY = "wa:status:";
+    private static final List<String> STATUS_ORDER = List.of("submitted", "sent", "delivered", "read", "failed");
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Duration retention;
+    private final int maxBatchSize;
+    private final MeterRegistry meterRegistry;
+    private final Timer deliveryLatency;
+    private final Counter flushFailures;
+
+    // Receipts waiting for the next flush, coalesced per outbound message ID
+    private final ConcurrentHashMap<String, Receipt> pending = new ConcurrentHashMap<>();
+
+    // Submit times of messages this node sent recently, for the delivery latency timer
+    private final Map<String, Long> recentSubmissions;
+
+    public MessageStatusService(
+        RedisTemplate<String, Object> redisTemplate,
+        MeterRegistry meterRegistry,
+        @Value("${whatsapp.status.retention:7d}") Duration retention,
+        @Value("${whatsapp.status.max-batch-size:500}") int maxBatchSize,
+        @Value("${whatsapp.status.latency-tracking-size:10000}") int latencyTrackingSize
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.retention = retention;
+        this.maxBatchSize = maxBatchSize;
+        this.meterRegistry = meterRegistry;
+        this.deliveryLatency = Timer.builder("whatsapp.delivery.latency")
+            .description("Time from a successful send to Meta's delivered receipt")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.flushFailures = Counter.builder("whatsapp.status.flush.failures")
+            .register(meterRegistry);
+        this.recentSubmissions = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > latencyTrackingSize;
+            }
+        };
+    }
+
+    public void recordSubmitted(String messageId, String recipientId) {
+        if (messageId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (recentSubmissions) {
+            recentSubmissions.put(messageId, now);
+        }
+        buffer(messageId, Receipt.of("submitted", now, recipientId, null));
+    }
+
+    public void record(WhatsAppWebhookPayload.Status status) {
+        if (status.id() == null || status.status() == null) {
+            return;
+        }
+
+        String state = status.status().toLowerCase();
+        long timestampMillis = parseEpochSeconds(status.timestamp());
+        meterRegistry.counter("whatsapp.status.received", "status", state).increment();
+
+        if ("delivered".equals(state)) {
+            Long submittedAt;
+            synchronized (recentSubmissions) {
+                submittedAt = recentSubmissions.remove(status.id());
+            }
+            if (submittedAt != null && timestampMillis > 0) {
+                deliveryLatency.record(Duration.ofMillis(Math.max(0, timestampMillis - submittedAt)));
+            }
+        }
+
+        String error = null;
+        if (status.errors() != null && !status.errors().isEmpty()) {
+            var first = status.errors().getFirst();
+            error = first.code() + ": " + first.title();
+        }
+        buffer(status.id(), Receipt.of(state, timestampMillis, status.recipientId(), error));
+    }
+
+    public Optional<DeliveryStatus> find(String messageId) {
+        Map<String, String> fields = redisTemplate.execute((RedisCallback<Map<String, String>>) connection -> {
+            Map<byte[], byte[]> raw = connection.hashCommands().hGetAll(bytes(STATUS_KEY + messageId));
+            Map<String, String> decoded = new HashMap<>();
+            if (raw != null) {
+                raw.forEach((k, v) -> decoded.put(string(k), string(v)));
+            }
+            return decoded;
+        });
+        if (fields == null || fields.isEmpty()) {
+            return Optional.empty();
+        }
+
+        String latest = null;
+        for (String state : STATUS_ORDER) {
+            if (fields.containsKey(state + "_at")) {
+                latest = state;
+            }
+        }
+        return Optional.of(new DeliveryStatus(
+            messageId,
+            latest,
+            fields.get("recipient"),
+            fields.get("error")
+        ));
+    }
+
+    @Scheduled(fixedDelayString = "${whatsapp.status.flush-interval-ms:1000}")
+    public void flush() {
+        while (!pending.isEmpty()) {
+            List<Map.Entry<String, Receipt>> batch = drain();
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                write(batch);
+            } catch (Exception e) {
+                flushFailures.increment();
+                log.warn("Failed to flush {} message statuses, retrying next cycle: {}",
+                    batch.size(), e.getMessage());
+                batch.forEach(entry -> buffer(entry.getKey(), entry.getValue()));
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flush();
+    }
+
+    private void buffer(String messageId, Receipt receipt) {
+        pending.merge(messageId, receipt, Receipt::merge);
+    }
+
+    private List<Map.Entry<String, Receipt>> drain() {
+        List<Map.Entry<String, Receipt>> batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+        for (String messageId : pending.keySet()) {
+            // remove() hands over whatever was merged so far; later receipts start a new entry
+            Receipt receipt = pending.remove(messageId);
+            if (receipt != null) {
+                batch.add(Map.entry(messageId, receipt));
+            }
+            if (batch.size() >= maxBatchSize) {
+                break;
+            }
+        }
+        return batch;
+    }
+
+    private void write(List<Map.Entry<String, Receipt>> batch) {
+        long retentionSeconds = retention.toSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, Receipt> entry : batch) {
+                byte[] key = bytes(STATUS_KEY + entry.getKey());
+                connection.hashCommands().hMSet(key, entry.getValue().toFields());
+                connection.keyCommands().expire(key, retentionSeconds);
+            }
+            return null;
+        });
+        log.debug("Flushed {} message statuses", batch.size());
+    }
+
+    private static long parseEpochSeconds(String timestamp) {
+        if (timestamp == null) {
+            return System.currentTimeMillis();
+        }
+        try {
+            return Long.parseLong(timestamp) * 1000;
+        } catch (NumberFormatException e) {
+            return System.currentTimeMillis();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    public record DeliveryStatus(String messageId, String status, String recipientId, String error) {}
+
+    // One timestamp per state rather than a single status field, so receipts that arrive
+    // out of order or land in different flushes never overwrite a later state
+    private record Receipt(Map<String, Long> stateTimes, String recipientId, String error) {
+
+        static Receipt of(String state, long timestampMillis, String recipientId, String error) {
+            return new Receipt(Map.of(state, timestampMillis), recipientId, error);
+        }
+
+        Receipt merge(Receipt newer) {
+            Map<String, Long> times = new HashMap<>(stateTimes);
+            newer.stateTimes.forEach((state, at) -> times.merge(state, at, Math::max));
+            return new Receipt(
+                times,
+                newer.recipientId != null ? newer.recipientId : recipientId,
+                newer.error != null ? newer.error : error
+            );
+        }
+
+        Map<byte[], byte[]> toFields() {
+            Map<byte[], byte[]> fields = new HashMap<>();
+            stateTimes.forEach((state, at) -> fields.put(bytes(state + "_at"), bytes(Long.toString(at))));
+            if (recipientId != null) {
+                fields.put(bytes("recipient"), bytes(recipientId));
+            }
+            if (error != null) {
+                fields.put(bytes("error"), bytes(error));
+            }
+            return fields;
+        }
+    }
+}
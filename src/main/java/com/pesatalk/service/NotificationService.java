@@ -2,10 +2,11 @@ package com.pesatalk.service;
 
 import com.pesatalk.integration.whatsapp.WhatsAppClient;
 import com.pesatalk.integration.whatsapp.dto.WhatsAppMessageRequest;
+import com.pesatalk.integration.whatsapp.dto.WhatsAppMessageResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -16,57 +17,67 @@ public class NotificationService {
     private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
 
     private final WhatsAppClient whatsAppClient;
+    private final MessageStatusService messageStatusService;
 
-    public NotificationService(WhatsAppClient whatsAppClient) {
+    public NotificationService(WhatsAppClient whatsAppClient, MessageStatusService messageStatusService) {
         this.whatsAppClient = whatsAppClient;
+        this.messageStatusService = messageStatusService;
     }
 
-    @Async
+    // Outbound calls are non-blocking, so these return as soon as the request is
+    // issued instead of parking an async pool thread for the whole HTTP round trip
     public CompletableFuture<String> sendMessage(String recipientWhatsAppId, String message) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                var response = whatsAppClient.sendTextMessage(recipientWhatsAppId, message);
-                String messageId = response.getFirstMessageId();
-                log.debug("Sent message to {}, id={}", recipientWhatsAppId, messageId);
-                return messageId;
-            } catch (Exception e) {
+        return deliverMessage(recipientWhatsAppId, message)
+            .onErrorResume(e -> {
                 log.error("Failed to send message to {}: {}",
                     recipientWhatsAppId, e.getMessage(), e);
-                return null;
-            }
-        });
+                return Mono.empty();
+            })
+            .toFuture();
     }
 
-    @Async
     public CompletableFuture<String> sendInteractiveButtons(
         String recipientWhatsAppId,
         String bodyText,
         List<WhatsAppMessageRequest.Button> buttons
     ) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                var response = whatsAppClient.sendInteractiveButtons(
-                    recipientWhatsAppId,
-                    bodyText,
-                    buttons
-                );
-                String messageId = response.getFirstMessageId();
-                log.debug("Sent interactive message to {}, id={}", recipientWhatsAppId, messageId);
-                return messageId;
-            } catch (Exception e) {
+        return deliverInteractiveButtons(recipientWhatsAppId, bodyText, buttons)
+            .onErrorResume(e -> {
                 log.error("Failed to send interactive message to {}: {}",
                     recipientWhatsAppId, e.getMessage(), e);
-                return null;
-            }
-        });
+                return Mono.empty();
+            })
+            .toFuture();
+    }
+
+    // Delivery with errors left to the caller, for senders that retry; completes with
+    // Meta's message ID, or empty if the response did not carry one
+    public Mono<String> deliverMessage(String recipientWhatsAppId, String message) {
+        return whatsAppClient.sendTextMessageReactive(recipientWhatsAppId, message)
+            .mapNotNull(WhatsAppMessageResponse::getFirstMessageId)
+            .doOnNext(messageId -> {
+                log.debug("Sent message to {}, id={}", recipientWhatsAppId, messageId);
+                messageStatusService.recordSubmitted(messageId, recipientWhatsAppId);
+            });
+    }
+
+    public Mono<String> deliverInteractiveButtons(
+        String recipientWhatsAppId,
+        String bodyText,
+        List<WhatsAppMessageRequest.Button> buttons
+    ) {
+        return whatsAppClient.sendInteractiveButtonsReactive(recipientWhatsAppId, bodyText, buttons)
+            .mapNotNull(WhatsAppMessageResponse::getFirstMessageId)
+            .doOnNext(messageId -> {
+                log.debug("Sent interactive message to {}, id={}", recipientWhatsAppId, messageId);
+                messageStatusService.recordSubmitted(messageId, recipientWhatsAppId);
+            });
     }
 
-    @Async
     public CompletableFuture<String> sendErrorMessage(String recipientWhatsAppId, String errorMessage) {
         return sendMessage(recipientWhatsAppId, errorMessage);
     }
 
-    @Async
     public CompletableFuture<String> sendTransactionConfirmation(
         String recipientWhatsAppId,
         String amount,
@@ -84,7 +95,6 @@ public class NotificationService {
         return sendMessage(recipientWhatsAppId, message);
     }
 
-    @Async
     public CompletableFuture<String> sendTransactionFailed(
         String recipientWhatsAppId,
         String reason
@@ -0,0 +1,290 @@
+package com.pesatalk.service;
+
+import com.pesatalk.integration.mpesa.MPesaClient;
+import com.pesatalk.integration.mpesa.dto.STKPushResponse;
+import com.pesatalk.model.Transaction;
+import com.pesatalk.model.enums.TransactionStatus;
+import com.pesatalk.model.enums.TransactionType;
+import com.pesatalk.repository.TransactionRepository;
+import com.pesatalk.service.outbox.NotificationOutbox;
+import com.pesatalk.util.PhoneNumberUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+// Sends the STK push for confirmed transactions off the confirming request. A committed
+// CONFIRMED row is the queue entry: a worker claims it by moving it to PROCESSING in a
+// short transaction, then issues the non-blocking Daraja call, and a worker records
+// STK_PUSHED or FAILED in a second transaction when it completes. No thread waits on
+// Daraja; max-in-flight bounds the pushes outstanding at once, staying within the mpesa
+// bulkhead. Rows whose dispatch was lost or refused are picked up again by age.
+@Service
+public class STKPushDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(STKPushDispatcher.class);
+    private static final String AIRTIME_PUSH_DESCRIPTION = "PesaTalk Airtime";
+
+    private final TransactionRepository transactionRepository;
+    private final MPesaClient mpesaClient;
+    private final NotificationOutbox notificationOutbox;
+    private final PhoneNumberUtil phoneNumberUtil;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor stkPushExecutor;
+    private final Semaphore inFlight;
+    private final Duration redispatchAfter;
+    private final int redispatchBatchSize;
+    private final Counter rejected;
+    private final Counter redispatched;
+
+    // What the worker needs for the Daraja call, read while the claim holds the row
+    private record PushRequest(
+        UUID transactionId,
+        TransactionType type,
+        String senderWhatsAppId,
+        String recipientPhone,
+        BigDecimal amount,
+        String accountReference,
+        String description
+    ) {}
+
+    public STKPushDispatcher(
+        TransactionRepository transactionRepository,
+        MPesaClient mpesaClient,
+        NotificationOutbox notificationOutbox,
+        PhoneNumberUtil phoneNumberUtil,
+        TransactionTemplate transactionTemplate,
+        MeterRegistry meterRegistry,
+        @Qualifier("stkPushExecutor") Executor stkPushExecutor,
+        @Value("${mpesa.stk-push.redispatch-after:1m}") Duration redispatchAfter,
+        @Value("${mpesa.stk-push.redispatch-batch-size:100}") int redispatchBatchSize,
+        @Value("${mpesa.stk-push.max-in-flight:20}") int maxInFlight
+    ) {
+        this.transactionRepository = transactionRepository;
+        this.mpesaClient = mpesaClient;
+        this.notificationOutbox = notificationOutbox;
+        this.phoneNumberUtil = phoneNumberUtil;
+        this.transactionTemplate = transactionTemplate;
+        this.stkPushExecutor = stkPushExecutor;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.redispatchAfter = redispatchAfter;
+        this.redispatchBatchSize = redispatchBatchSize;
+        this.rejected = Counter.builder("mpesa.stk_push.dispatch.rejected")
+            .description("STK pushes left for the redispatch sweep because too many were in flight")
+            .register(meterRegistry);
+        this.redispatched = Counter.builder("mpesa.stk_push.redispatched")
+            .description("Confirmed transactions queued again by the redispatch sweep")
+            .register(meterRegistry);
+    }
+
+    // Call in the transaction that commits CONFIRMED; nothing is queued if it rolls back
+    public void dispatchAfterCommit(UUID transactionId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dispatch(transactionId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dispatch(transactionId);
+            }
+        });
+    }
+
+    private void dispatch(UUID transactionId) {
+        // Refused pushes are still CONFIRMED in the database, so the sweep retries them
+        if (!inFlight.tryAcquire()) {
+            rejected.increment();
+            log.warn("Too many STK pushes in flight, leaving transaction {} for redispatch", transactionId);
+            return;
+        }
+        try {
+            stkPushExecutor.execute(() -> push(transactionId));
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            rejected.increment();
+            log.warn("STK push queue is full, leaving transaction {} for redispatch", transactionId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${mpesa.stk-push.redispatch-interval-ms:30000}")
+    @SchedulerLock(name = "redispatchConfirmedTransactions", lockAtMostFor = "2m", lockAtLeastFor = "10s")
+    public void redispatchConfirmed() {
+        List<UUID> stranded = transactionRepository.findIdsByStatusUpdatedBefore(
+            TransactionStatus.CONFIRMED,
+            Instant.now().minus(redispatchAfter),
+            PageRequest.of(0, redispatchBatchSize)
+        );
+        if (stranded.isEmpty()) {
+            return;
+        }
+
+        log.info("Redispatching {} confirmed transactions without an STK push", stranded.size());
+        redispatched.increment(stranded.size());
+        stranded.forEach(this::dispatch);
+    }
+
+    private void push(UUID transactionId) {
+        PushRequest request;
+        try {
+            request = transactionTemplate.execute(status -> claim(transactionId));
+        } catch (Exception e) {
+            // Unclaimed, so it stays CONFIRMED for the sweep
+            log.error("Failed to claim transaction {} for STK push: {}", transactionId, e.getMessage());
+            inFlight.release();
+            return;
+        }
+        if (request == null) {
+            inFlight.release();
+            return;
+        }
+
+        Mono.defer(() -> mpesaClient.initiateSTKPushReactive(
+                request.recipientPhone(),
+                request.amount(),
+                request.accountReference(),
+                request.description()
+            ))
+            .subscribe(
+                response -> complete(() -> recordResult(request, response)),
+                error -> complete(() -> recordFailure(request, error))
+            );
+    }
+
+    // The result arrives on an HTTP client thread, which must not run JDBC, so the
+    // recording transaction goes back to the worker pool. Should that refuse it, the
+    // row would be stranded in PROCESSING with a live push, so it runs on Reactor's
+    // elastic scheduler instead.
+    private void complete(Runnable record) {
+        Runnable task = () -> {
+            try {
+                record.run();
+            } catch (Exception e) {
+                log.error("Failed to record STK Push outcome: {}", e.getMessage(), e);
+            } finally {
+                inFlight.release();
+            }
+        };
+        try {
+            stkPushExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            Schedulers.boundedElastic().schedule(task);
+        }
+    }
+
+    private PushRequest claim(UUID transactionId) {
+        Transaction transaction = transactionRepository.findByIdWithLock(transactionId).orElse(null);
+        if (transaction == null || transaction.getStatus() != TransactionStatus.CONFIRMED) {
+            // Already claimed by another worker or node, or cancelled meanwhile
+            log.debug("Transaction {} is no longer awaiting an STK push", transactionId);
+            return null;
+        }
+
+        transaction.transitionTo(TransactionStatus.PROCESSING);
+        transactionRepository.save(transaction);
+
+        return new PushRequest(
+            transactionId,
+            transaction.getTransactionType(),
+            transaction.getSender().getWhatsAppId(),
+            phoneNumberUtil.decryptPhoneNumber(transaction.getRecipientPhoneEncrypted()),
+            transaction.getAmount(),
+            transaction.getAccountReference(),
+            pushDescription(transaction)
+        );
+    }
+
+    // Daraja keeps 13 characters of TransactionDesc, which would cut the stored airtime
+    // description short, so airtime pushes carry the label they always have
+    private static String pushDescription(Transaction transaction) {
+        return transaction.getTransactionType() == TransactionType.BUY_AIRTIME
+            ? AIRTIME_PUSH_DESCRIPTION
+            : transaction.getDescription();
+    }
+
+    private void recordResult(PushRequest request, STKPushResponse response) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Transaction transaction = findProcessing(request.transactionId());
+            if (transaction == null) {
+                return;
+            }
+
+            if (response.isSuccessful()) {
+                transaction.setMerchantRequestId(response.merchantRequestID());
+                transaction.setCheckoutRequestId(response.checkoutRequestID());
+                transaction.transitionTo(TransactionStatus.STK_PUSHED);
+                transactionRepository.save(transaction);
+
+                notificationOutbox.enqueueMessage(
+                    request.senderWhatsAppId(),
+                    request.type() == TransactionType.BUY_AIRTIME
+                        ? "Please enter your MPesa PIN on your phone to complete the airtime purchase."
+                        : "Please enter your MPesa PIN on your phone to complete the transaction.",
+                    "tx:" + request.transactionId() + ":STK_PUSHED"
+                );
+            } else {
+                transaction.transitionTo(TransactionStatus.FAILED);
+                transaction.setFailureReason(response.getErrorDetails());
+                transactionRepository.save(transaction);
+
+                notificationOutbox.enqueueMessage(
+                    request.senderWhatsAppId(),
+                    (request.type() == TransactionType.BUY_AIRTIME ? "Airtime purchase failed: " : "Transaction failed: ")
+                        + response.getErrorDetails(),
+                    "tx:" + request.transactionId() + ":FAILED"
+                );
+            }
+        });
+    }
+
+    private void recordFailure(PushRequest request, Throwable error) {
+        log.error("Error processing transaction {}: {}", request.transactionId(), error.getMessage(), error);
+        transactionTemplate.executeWithoutResult(status -> {
+            Transaction transaction = findProcessing(request.transactionId());
+            if (transaction == null) {
+                return;
+            }
+
+            transaction.transitionTo(TransactionStatus.FAILED);
+            transaction.setFailureReason("Processing error: " + error.getMessage());
+            transactionRepository.save(transaction);
+
+            notificationOutbox.enqueueMessage(
+                request.senderWhatsAppId(),
+                request.type() == TransactionType.BUY_AIRTIME
+                    ? "An error occurred while processing your airtime purchase. Please try again."
+                    : "An error occurred while processing your transaction. Please try again.",
+                "tx:" + request.transactionId() + ":FAILED"
+            );
+        });
+    }
+
+    private Transaction findProcessing(UUID transactionId) {
+        Transaction transaction = transactionRepository.findByIdWithLock(transactionId).orElse(null);
+        if (transaction == null || transaction.getStatus() != TransactionStatus.PROCESSING) {
+            log.warn("Transaction {} is no longer processing, ignoring STK Push result", transactionId);
+            return null;
+        }
+        return transaction;
+    }
+}
@@ -0,0 +1,166 @@
+package com.pesatalk.service;
+
+import com.pesatalk.integration.mpesa.MPesaClient;
+import com.pesatalk.integration.mpesa.dto.STKQueryResponse;
+import com.pesatalk.model.Transaction;
+import com.pesatalk.model.enums.TransactionStatus;
+import com.pesatalk.repository.TransactionRepository;
+import com.pesatalk.service.outbox.NotificationOutbox;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+// Settles STK pushes whose callback has not arrived by asking Daraja for the outcome,
+// and applies any answer through processSTKCallback exactly as the callback would have.
+// Pushes the customer is still looking at are asked about again next run. Transactions
+// left in PROCESSING by a worker that died mid-push cannot be queried, having no
+// checkout ID, and are failed once processing-timeout has passed.
+@Service
+public class STKPushReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(STKPushReconciler.class);
+
+    private final TransactionRepository transactionRepository;
+    private final MPesaClient mpesaClient;
+    private final TransactionService transactionService;
+    private final NotificationOutbox notificationOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Duration queryAfter;
+    private final Duration processingTimeout;
+    private final int batchSize;
+    private final int queryConcurrency;
+
+    public STKPushReconciler(
+        TransactionRepository transactionRepository,
+        MPesaClient mpesaClient,
+        TransactionService transactionService,
+        NotificationOutbox notificationOutbox,
+        TransactionTemplate transactionTemplate,
+        MeterRegistry meterRegistry,
+        @Value("${mpesa.stk-push.query-after:2m}") Duration queryAfter,
+        @Value("${mpesa.stk-push.processing-timeout:10m}") Duration processingTimeout,
+        @Value("${mpesa.stk-push.reconcile-batch-size:100}") int batchSize,
+        @Value("${mpesa.stk-push.query-concurrency:5}") int queryConcurrency
+    ) {
+        this.transactionRepository = transactionRepository;
+        this.mpesaClient = mpesaClient;
+        this.transactionService = transactionService;
+        this.notificationOutbox = notificationOutbox;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.queryAfter = queryAfter;
+        this.processingTimeout = processingTimeout;
+        this.batchSize = batchSize;
+        this.queryConcurrency = queryConcurrency;
+    }
+
+    @Scheduled(fixedDelayString = "${mpesa.stk-push.reconcile-interval-ms:60000}", scheduler = "outboundJobScheduler")
+    @SchedulerLock(name = "reconcileSTKPushes", lockAtMostFor = "5m", lockAtLeastFor = "10s")
+    public void reconcile() {
+        Instant now = Instant.now();
+        reconcilePushed(now);
+        failStrandedProcessing(now);
+    }
+
+    private void reconcilePushed(Instant now) {
+        List<String> checkoutRequestIds = transactionRepository.findCheckoutRequestIdsPushedBefore(
+            TransactionStatus.STK_PUSHED,
+            now.minus(queryAfter),
+            PageRequest.of(0, batchSize)
+        );
+        if (checkoutRequestIds.isEmpty()) {
+            return;
+        }
+
+        // Queries run concurrently under the client's rate limit; results are applied one
+        // at a time on this thread, since each is a blocking database transaction
+        List<STKQueryResponse> results = Flux.fromIterable(checkoutRequestIds)
+            .flatMap(this::query, queryConcurrency)
+            .collectList()
+            .block();
+        if (results == null) {
+            return;
+        }
+
+        int settled = 0;
+        for (STKQueryResponse result : results) {
+            if (result.isStillProcessing()) {
+                record("pending");
+                continue;
+            }
+            try {
+                transactionService.processSTKCallback(result.toCallback());
+                record("0".equals(result.resultCode().trim()) ? "completed" : "failed");
+                settled++;
+            } catch (Exception e) {
+                log.error("Error applying STK Push query result for {}: {}",
+                    result.checkoutRequestID(), e.getMessage(), e);
+            }
+        }
+        log.info("Queried {} STK pushes without a callback, settled {}", checkoutRequestIds.size(), settled);
+    }
+
+    private Mono<STKQueryResponse> query(String checkoutRequestId) {
+        return mpesaClient.querySTKPushStatus(checkoutRequestId)
+            .onErrorResume(e -> {
+                // Asked again next run
+                record("unanswered");
+                log.warn("STK Push query for {} failed: {}", checkoutRequestId, e.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    private void failStrandedProcessing(Instant now) {
+        List<UUID> stranded = transactionRepository.findIdsByStatusUpdatedBefore(
+            TransactionStatus.PROCESSING,
+            now.minus(processingTimeout),
+            PageRequest.of(0, batchSize)
+        );
+
+        for (UUID transactionId : stranded) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> failStranded(transactionId));
+            } catch (Exception e) {
+                log.error("Error failing stranded transaction {}: {}", transactionId, e.getMessage());
+            }
+        }
+    }
+
+    private void failStranded(UUID transactionId) {
+        Transaction transaction = transactionRepository.findByIdWithLock(transactionId).orElse(null);
+        if (transaction == null || transaction.getStatus() != TransactionStatus.PROCESSING) {
+            return;
+        }
+
+        transaction.transitionTo(TransactionStatus.FAILED);
+        transaction.setFailureReason("STK Push outcome unknown - processing interrupted");
+        transactionRepository.save(transaction);
+
+        notificationOutbox.enqueueMessage(
+            transaction.getSender().getWhatsAppId(),
+            "An error occurred while processing your transaction. Please try again.",
+            "tx:" + transactionId + ":FAILED"
+        );
+
+        record("stranded");
+        log.warn("Failed transaction {} left in PROCESSING since {}", transactionId, transaction.getUpdatedAt());
+    }
+
+    private void record(String outcome) {
+        meterRegistry.counter("mpesa.stk_push.reconciled", "outcome", outcome).increment();
+    }
+}
@@ -2,9 +2,7 @@ package com.pesatalk.service;
 
 import com.pesatalk.dto.ParsedMessage;
 import com.pesatalk.exception.TransactionException;
-import com.pesatalk.integration.mpesa.MPesaClient;
 import com.pesatalk.integration.mpesa.dto.STKCallbackPayload;
-import com.pesatalk.integration.mpesa.dto.STKPushResponse;
 import com.pesatalk.integration.whatsapp.dto.WhatsAppMessageRequest;
 import com.pesatalk.model.Contact;
 import com.pesatalk.model.Transaction;
@@ -12,6 +10,8 @@ import com.pesatalk.model.User;
 import com.pesatalk.model.enums.TransactionStatus;
 import com.pesatalk.model.enums.TransactionType;
 import com.pesatalk.repository.TransactionRepository;
+import com.pesatalk.service.outbox.NotificationOutbox;
+import com.pesatalk.service.scheduler.ConfirmationExpiryQueue;
 import com.pesatalk.util.PhoneNumberUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,7 +39,9 @@ public class TransactionService {
     private final TransactionRepository transactionRepository;
     private final ContactService contactService;
     private final NotificationService notificationService;
-    private final MPesaClient mpesaClient;
+    private final NotificationOutbox notificationOutbox;
+    private final STKPushDispatcher stkPushDispatcher;
+    private final ConfirmationExpiryQueue confirmationExpiryQueue;
     private final PhoneNumberUtil phoneNumberUtil;
     private final IntentParsingService intentParsingService;
 
@@ -56,14 +58,18 @@ public class TransactionService {
         TransactionRepository transactionRepository,
         ContactService contactService,
         NotificationService notificationService,
-        MPesaClient mpesaClient,
+        NotificationOutbox notificationOutbox,
+        STKPushDispatcher stkPushDispatcher,
+        ConfirmationExpiryQueue confirmationExpiryQueue,
         PhoneNumberUtil phoneNumberUtil,
         IntentParsingService intentParsingService
     ) {
         this.transactionRepository = transactionRepository;
         this.contactService = contactService;
         this.notificationService = notificationService;
-        this.mpesaClient = mpesaClient;
+        this.notificationOutbox = notificationOutbox;
+        this.stkPushDispatcher = stkPushDispatcher;
+        this.confirmationExpiryQueue = confirmationExpiryQueue;
         this.phoneNumberUtil = phoneNumberUtil;
         this.intentParsingService = intentParsingService;
     }
@@ -75,7 +81,7 @@ public class TransactionService {
 
         // Validate amount
         if (amount.compareTo(minAmount) < 0) {
-            notificationService.sendMessage(
+            notificationOutbox.enqueueMessage(
                 message.senderWhatsAppId(),
                 "Minimum amount is KES " + minAmount + ". Please try again."
             );
@@ -83,7 +89,7 @@ public class TransactionService {
         }
 
         if (amount.compareTo(maxAmount) > 0) {
-            notificationService.sendMessage(
+            notificationOutbox.enqueueMessage(
                 message.senderWhatsAppId(),
                 "Maximum amount per transaction is KES " + maxAmount + ". Please try again."
             );
@@ -91,23 +97,28 @@ public class TransactionService {
         }
 
         // Resolve recipient phone number
-        String recipientPhone = resolveRecipientPhone(user, recipientIdentifier);
-        if (recipientPhone == null) {
-            notificationService.sendMessage(
+        Recipient recipient = resolveRecipient(user, recipientIdentifier);
+        if (recipient == null) {
+            List<String> suggestions = contactService.suggestAliases(user.getId(), recipientIdentifier);
+            notificationOutbox.enqueueMessage(
                 message.senderWhatsAppId(),
-                "I couldn't find the recipient. Please use a phone number (0712345678) or save a contact first."
+                suggestions.isEmpty()
+                    ? "I couldn't find the recipient. Please use a phone number (0712345678) or save a contact first."
+                    : "Which contact did you mean: " + String.join(", ", suggestions) + "? Please send the full name."
             );
             return;
         }
 
-        String recipientName = resolveRecipientName(user, recipientIdentifier, recipientPhone);
+        String recipientPhone = recipient.phone();
+        // For a contact this is the saved alias, so a typo-corrected match shows who will be paid
+        String recipientName = recipient.name();
 
         // Generate idempotency key
         String idempotencyKey = generateIdempotencyKey(user.getId(), recipientPhone, amount);
 
         // Check for duplicate
         if (transactionRepository.existsByIdempotencyKey(idempotencyKey)) {
-            notificationService.sendMessage(
+            notificationOutbox.enqueueMessage(
                 message.senderWhatsAppId(),
                 "You already have a similar pending transaction. Please confirm or cancel it first."
             );
@@ -133,6 +144,7 @@ public class TransactionService {
 
         Transaction saved = transactionRepository.save(transaction);
         log.info("Created transaction: id={}, status={}", saved.getId(), saved.getStatus());
+        confirmationExpiryQueue.scheduleAfterCommit(saved.getId(), saved.getConfirmationExpiresAt());
 
         // Send confirmation request
         sendConfirmationRequest(message.senderWhatsAppId(), saved, recipientName, amount);
@@ -156,7 +168,9 @@ public class TransactionService {
             WhatsAppMessageRequest.Button.of("cancel_" + transaction.getId(), "Cancel")
         );
 
-        notificationService.sendInteractiveButtons(whatsAppId, confirmMessage, buttons);
+        notificationOutbox.enqueueInteractiveButtons(
+            whatsAppId, confirmMessage, buttons, "tx:" + transaction.getId() + ":confirm"
+        );
     }
 
     @Transactional
@@ -181,7 +195,7 @@ public class TransactionService {
 
         // Verify state
         if (transaction.getStatus() != TransactionStatus.PENDING_CONFIRMATION) {
-            notificationService.sendMessage(
+            notificationOutbox.enqueueMessage(
                 user.getWhatsAppId(),
                 "This transaction is no longer pending confirmation."
             );
@@ -192,19 +206,19 @@ public class TransactionService {
         if (Instant.now().isAfter(transaction.getConfirmationExpiresAt())) {
             transaction.transitionTo(TransactionStatus.EXPIRED);
             transactionRepository.save(transaction);
-            notificationService.sendMessage(
+            notificationOutbox.enqueueMessage(
                 user.getWhatsAppId(),
-                "This transaction has expired. Please start a new transaction."
+                "This transaction has expired. Please start a new transaction.",
+                "tx:" + transaction.getId() + ":EXPIRED"
             );
             return;
         }
 
-        // Transition to CONFIRMED
+        // Transition to CONFIRMED; the STK push is sent by a dispatcher worker once this
+        // commits, so the row lock and the JDBC connection are not held for the Daraja call
         transaction.transitionTo(TransactionStatus.CONFIRMED);
         transactionRepository.save(transaction);
-
-        // Process the transaction
-        processTransaction(transaction);
+        stkPushDispatcher.dispatchAfterCommit(transaction.getId());
     }
 
     @Transactional
@@ -228,59 +242,10 @@ public class TransactionService {
             transaction.setFailureReason("Cancelled by user");
             transactionRepository.save(transaction);
 
-            notificationService.sendMessage(
+            notificationOutbox.enqueueMessage(
                 user.getWhatsAppId(),
-                "Transaction cancelled."
-            );
-        }
-    }
-
-    private void processTransaction(Transaction transaction) {
-        String recipientPhone = phoneNumberUtil.decryptPhoneNumber(
-            transaction.getRecipientPhoneEncrypted()
-        );
-
-        try {
-            transaction.transitionTo(TransactionStatus.PROCESSING);
-            transactionRepository.save(transaction);
-
-            // Initiate STK Push
-            STKPushResponse response = mpesaClient.initiateSTKPush(
-                recipientPhone,
-                transaction.getAmount(),
-                transaction.getAccountReference(),
-                transaction.getDescription()
-            );
-
-            if (response.isSuccessful()) {
-                transaction.setMerchantRequestId(response.merchantRequestID());
-                transaction.setCheckoutRequestId(response.checkoutRequestID());
-                transaction.transitionTo(TransactionStatus.STK_PUSHED);
-                transactionRepository.save(transaction);
-
-                notificationService.sendMessage(
-                    transaction.getSender().getWhatsAppId(),
-                    "Please enter your MPesa PIN on your phone to complete the transaction."
-                );
-            } else {
-                transaction.transitionTo(TransactionStatus.FAILED);
-                transaction.setFailureReason(response.getErrorDetails());
-                transactionRepository.save(transaction);
-
-                notificationService.sendMessage(
-                    transaction.getSender().getWhatsAppId(),
-                    "Transaction failed: " + response.getErrorDetails()
-                );
-            }
-        } catch (Exception e) {
-            log.error("Error processing transaction {}: {}", transaction.getId(), e.getMessage(), e);
-            transaction.transitionTo(TransactionStatus.FAILED);
-            transaction.setFailureReason("Processing error: " + e.getMessage());
-            transactionRepository.save(transaction);
-
-            notificationService.sendMessage(
-                transaction.getSender().getWhatsAppId(),
-                "An error occurred while processing your transaction. Please try again."
+                "Transaction cancelled.",
+                "tx:" + transaction.getId() + ":CANCELLED"
             );
         }
     }
@@ -316,18 +281,22 @@ public class TransactionService {
             transaction.setResultDescription(callback.getResultDescription());
             transactionRepository.save(transaction);
 
-            notificationService.sendMessage(
+            notificationOutbox.enqueueMessage(
                 transaction.getSender().getWhatsAppId(),
                 String.format(
                     "Transaction successful!\n\n" +
                     "Amount: KES %,.2f\n" +
                     "To: %s\n" +
-                    "Receipt: %s\n\n" +
+                    "%s\n\n" +
                     "Thank you for using PesaTalk!",
                     transaction.getAmount(),
                     transaction.getRecipientName(),
-                    callback.getMpesaReceiptNumber()
-                )
+                    // Absent when the result came from a status query rather than the callback
+                    callback.getMpesaReceiptNumber() != null
+                        ? "Receipt: " + callback.getMpesaReceiptNumber()
+                        : "MPesa will send your receipt by SMS."
+                ),
+                "tx:" + transaction.getId() + ":COMPLETED"
             );
 
             // Update contact transaction count
@@ -342,9 +311,10 @@ public class TransactionService {
             transaction.setFailureReason(callback.getResultDescription());
             transactionRepository.save(transaction);
 
-            notificationService.sendMessage(
+            notificationOutbox.enqueueMessage(
                 transaction.getSender().getWhatsAppId(),
-                "Transaction failed: " + callback.getResultDescription()
+                "Transaction failed: " + callback.getResultDescription(),
+                "tx:" + transaction.getId() + ":FAILED"
             );
         }
     }
@@ -372,26 +342,20 @@ public class TransactionService {
         notificationService.sendMessage(whatsAppId, sb.toString());
     }
 
-    private String resolveRecipientPhone(User user, String identifier) {
+    private record Recipient(String phone, String name) {}
+
+    private Recipient resolveRecipient(User user, String identifier) {
         // Check if it's a phone number
         String normalized = intentParsingService.normalizePhoneNumber(identifier);
         if (normalized != null) {
-            return normalized;
-        }
-
-        // Try to find a contact by name
-        return contactService.findContactPhoneByAlias(user.getId(), identifier);
-    }
-
-    private String resolveRecipientName(User user, String identifier, String phone) {
-        // If identifier is not a phone, use it as the name
-        if (!intentParsingService.isValidPhoneNumber(identifier)) {
-            return identifier;
+            String name = contactService.findContactNameByPhone(user.getId(), normalized).orElse(normalized);
+            return new Recipient(normalized, name);
         }
 
-        // Try to find contact name by phone
-        return contactService.findContactNameByPhone(user.getId(), phone)
-            .orElse(phone);
+        // Try to find a contact by name, tolerating typos
+        return contactService.resolveAlias(user.getId(), identifier)
+            .map(contact -> new Recipient(contactService.decryptPhone(contact), contact.alias()))
+            .orElse(null);
     }
 
     private String generateIdempotencyKey(UUID userId, String recipientPhone, BigDecimal amount) {
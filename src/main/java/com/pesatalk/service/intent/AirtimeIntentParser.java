@@ -7,6 +7,7 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -59,6 +60,13 @@ public class AirtimeIntentParser implements IntentParser {
         return 90;
     }
 
+    @Override
+    public Set<String> getLeadTokens() {
+        // Openers of each pattern; "kes" or a digit covers "100 airtime"
+        return Set.of("buy", "airtime", "credit", "bundle", "bundles", "top", "topup", "recharge", "nunua",
+            "kes", LeadToken.NUMBER);
+    }
+
     @Override
     public Optional<ParsedIntent> parse(String text) {
         if (text == null || text.isBlank()) {
@@ -72,10 +80,9 @@ public class AirtimeIntentParser implements IntentParser {
             Matcher matcher = pattern.matcher(normalized);
 
             if (matcher.matches()) {
-                String amountStr = matcher.group(1);
                 String recipient = matcher.groupCount() >= 2 ? matcher.group(2) : null;
 
-                BigDecimal amount = parseAmount(amountStr);
+                BigDecimal amount = AmountScanner.parse(normalized, matcher.start(1), matcher.end(1));
                 if (amount == null) {
                     continue;
                 }
@@ -99,19 +106,6 @@ public class AirtimeIntentParser implements IntentParser {
         return Optional.empty();
     }
 
-    private BigDecimal parseAmount(String amountStr) {
-        if (amountStr == null || amountStr.isBlank()) {
-            return null;
-        }
-
-        try {
-            String cleaned = amountStr.replaceAll("[,\\s]", "");
-            return new BigDecimal(cleaned);
-        } catch (NumberFormatException e) {
-            return null;
-        }
-    }
-
     private double calculateConfidence(BigDecimal amount, String recipient, int patternIndex) {
         double confidence = 0.75;
 
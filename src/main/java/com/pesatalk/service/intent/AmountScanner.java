@@ -0,0 +1,131 @@
+package com.pesatalk.service.intent;
+
+import java.math.BigDecimal;
+
+// Reads a money amount straight from the text into an unscaled long and a scale, and
+// only builds the BigDecimal once the whole amount is valid. Accepts an optional "kes"
+// prefix, commas or spaces as thousands separators, a decimal part, and a "k" (thousand)
+// or "bob" suffix. The scale follows the digits written, as new BigDecimal would:
+// "1,500" is 1500 and "100.50" is 100.50. Returns null for anything else.
+public final class AmountScanner {
+
+    // Digits that always fit in a long; longer amounts fall back to BigDecimal parsing
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L};
+
+    private AmountScanner() {
+    }
+
+    public static BigDecimal parse(CharSequence text) {
+        return text == null ? null : parse(text, 0, text.length());
+    }
+
+    public static BigDecimal parse(CharSequence text, int start, int end) {
+        int i = skipSpaces(text, start, end);
+        end = trimSpaces(text, i, end);
+
+        // "kes" prefix, case-insensitive, with or without a space before the digits
+        if (end - i > 3 && regionMatches(text, i, "kes")) {
+            i = skipSpaces(text, i + 3, end);
+        }
+
+        // Suffix: "k" multiplies by a thousand, "bob" is slang for shillings
+        int multiplierExponent = 0;
+        if (end - i > 3 && regionMatches(text, end - 3, "bob")) {
+            end = trimSpaces(text, i, end - 3);
+        } else if (end - i > 1 && (text.charAt(end - 1) == 'k' || text.charAt(end - 1) == 'K')) {
+            multiplierExponent = 3;
+            end = trimSpaces(text, i, end - 1);
+        }
+
+        long unscaled = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        boolean sawDigit = false;
+        for (int p = i; p < end; p++) {
+            char c = text.charAt(p);
+            if (c >= '0' && c <= '9') {
+                if (digits == MAX_LONG_DIGITS) {
+                    return parseLarge(text, i, end, multiplierExponent);
+                }
+                sawDigit = true;
+                unscaled = unscaled * 10 + (c - '0');
+                // Leading zeros add nothing to the magnitude
+                if (unscaled != 0) {
+                    digits++;
+                }
+                if (fraction) {
+                    scale++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if ((c == ',' || c <= ' ') && !fraction) {
+                // Thousands separator
+            } else {
+                return null;
+            }
+        }
+        if (!sawDigit) {
+            return null;
+        }
+
+        if (multiplierExponent > 0) {
+            if (scale >= multiplierExponent) {
+                scale -= multiplierExponent;
+            } else {
+                int shift = multiplierExponent - scale;
+                if (digits + shift > MAX_LONG_DIGITS) {
+                    return parseLarge(text, i, end, multiplierExponent);
+                }
+                unscaled *= POWERS_OF_TEN[shift];
+                scale = 0;
+            }
+        }
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    private static BigDecimal parseLarge(CharSequence text, int start, int end, int multiplierExponent) {
+        StringBuilder cleaned = new StringBuilder(end - start);
+        for (int p = start; p < end; p++) {
+            char c = text.charAt(p);
+            if (c != ',' && c > ' ') {
+                cleaned.append(c);
+            }
+        }
+        try {
+            BigDecimal amount = new BigDecimal(cleaned.toString());
+            return multiplierExponent > 0 ? amount.scaleByPowerOfTen(multiplierExponent).setScale(
+                Math.max(0, amount.scale() - multiplierExponent)) : amount;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean regionMatches(CharSequence text, int offset, String lowerCaseWord) {
+        for (int k = 0; k < lowerCaseWord.length(); k++) {
+            char c = text.charAt(offset + k);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            if (c != lowerCaseWord.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipSpaces(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimSpaces(CharSequence text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,89 @@
+package com.pesatalk.service.intent;
+
+import com.pesatalk.model.enums.Intent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+
+// Last-resort tier for messages no grammar or keyword recognises, typically
+// code-switched Swahili/English. Its confidence is capped below the regex parsers'
+// early-exit threshold, so it only decides when nothing more specific matched.
+// Classifies the intent only; missing amounts and recipients are asked for as usual.
+@Component
+public class ClassifierIntentParser implements IntentParser {
+
+    private static final Logger log = LoggerFactory.getLogger(ClassifierIntentParser.class);
+
+    private final IntentClassifier classifier;
+    private final double minProbability;
+    private final double maxConfidence;
+
+    public ClassifierIntentParser(
+        @Value("${intent.classifier.enabled:false}") boolean enabled,
+        @Value("${intent.classifier.model-location:}") String modelLocation,
+        @Value("${intent.classifier.min-probability:0.6}") double minProbability,
+        @Value("${intent.classifier.max-confidence:0.8}") double maxConfidence
+    ) {
+        this(enabled ? load(modelLocation) : null, minProbability, maxConfidence);
+    }
+
+    ClassifierIntentParser(IntentClassifier classifier, double minProbability, double maxConfidence) {
+        this.classifier = classifier;
+        this.minProbability = minProbability;
+        this.maxConfidence = maxConfidence;
+    }
+
+    @Override
+    public Intent getSupportedIntent() {
+        return null; // Supports whichever intents the model was trained on
+    }
+
+    @Override
+    public int getPriority() {
+        return 10; // Below the keyword parser
+    }
+
+    @Override
+    public Optional<ParsedIntent> parse(String text) {
+        if (classifier == null || text == null || text.isBlank()) {
+            return Optional.empty();
+        }
+
+        IntentClassifier.Prediction prediction = classifier.predict(text);
+        if (prediction.intent() == Intent.UNKNOWN || prediction.probability() < minProbability) {
+            return Optional.empty();
+        }
+
+        return Optional.of(ParsedIntent.builder()
+            .intent(prediction.intent())
+            .confidence(Math.min(prediction.probability(), maxConfidence))
+            .metadata(Map.of("classifierProbability", prediction.probability()))
+            .build());
+    }
+
+    private static IntentClassifier load(String location) {
+        if (location == null || location.isBlank()) {
+            log.warn("Intent classifier is enabled but intent.classifier.model-location is not set");
+            return null;
+        }
+
+        Resource resource = new DefaultResourceLoader().getResource(location);
+        try (InputStream in = new BufferedInputStream(resource.getInputStream())) {
+            IntentClassifier classifier = IntentClassifier.read(in);
+            log.info("Loaded intent classifier from {} for {}", location, classifier.intents());
+            return classifier;
+        } catch (Exception e) {
+            // Parsing carries on with the rule-based parsers alone
+            log.error("Failed to load intent classifier from {}: {}", location, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.pesatalk.service.intent;
+
+import com.pesatalk.model.enums.Intent;
+import com.pesatalk.service.intent.ConversationContext.PendingQuestion;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.regex.Pattern;
+
+// Reads a message as the answer to the question the conversation is waiting on. One
+// handler per PendingQuestion, looked up in a table built once; every word set and
+// pattern is compiled here, so a reply costs a map lookup and at most one match.
+final class ContextualResponseParser {
+
+    private static final double CONFIDENCE = 0.95;
+
+    private static final Set<String> CONFIRM_WORDS = Set.of(
+        "yes", "confirm", "ndio", "sawa", "ok", "okay", "proceed"
+    );
+
+    private static final Set<String> CANCEL_WORDS = Set.of(
+        "no", "cancel", "hapana", "acha", "stop"
+    );
+
+    // Kenyan mobile number once spaces and dashes are gone, as SendMoneyIntentParser reads it
+    private static final Pattern PHONE = Pattern.compile("^(?:\\+?254|0)?([17]\\d{8})$");
+    private static final Pattern PHONE_SEPARATORS = Pattern.compile("[\\s-]");
+
+    private final Map<PendingQuestion, BiFunction<String, ConversationContext, Optional<ParsedIntent>>> handlers;
+
+    ContextualResponseParser() {
+        Map<PendingQuestion, BiFunction<String, ConversationContext, Optional<ParsedIntent>>> table =
+            new EnumMap<>(PendingQuestion.class);
+        table.put(PendingQuestion.NONE, (text, context) -> Optional.empty());
+        table.put(PendingQuestion.AWAITING_AMOUNT, ContextualResponseParser::parseAmount);
+        table.put(PendingQuestion.AWAITING_RECIPIENT, ContextualResponseParser::parseRecipient);
+        table.put(PendingQuestion.AWAITING_CONFIRMATION, ContextualResponseParser::parseConfirmation);
+        // The PIN is entered on the STK prompt, never in chat, so a reply here is read as a new message
+        table.put(PendingQuestion.AWAITING_PIN, (text, context) -> Optional.empty());
+        table.put(PendingQuestion.AWAITING_CONTACT_NAME, ContextualResponseParser::parseContactName);
+        table.put(PendingQuestion.AWAITING_CONTACT_PHONE, ContextualResponseParser::parseContactPhone);
+
+        for (PendingQuestion question : PendingQuestion.values()) {
+            if (!table.containsKey(question)) {
+                throw new IllegalStateException("No contextual handler for " + question);
+            }
+        }
+        this.handlers = table;
+    }
+
+    Optional<ParsedIntent> parse(String text, ConversationContext context) {
+        if (text == null || text.isBlank()) {
+            return Optional.empty();
+        }
+        return handlers.get(context.getPendingQuestion()).apply(text, context);
+    }
+
+    private static Optional<ParsedIntent> parseAmount(String text, ConversationContext context) {
+        // Accepts "1500", "1,500", "kes 1500", "1.5k" or "500 bob"
+        BigDecimal amount = AmountScanner.parse(text);
+        if (amount == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(ParsedIntent.builder()
+            .intent(context.getCurrentIntent())
+            .amount(amount)
+            .recipientIdentifier(context.getRecipient())
+            .confidence(CONFIDENCE)
+            .build());
+    }
+
+    private static Optional<ParsedIntent> parseRecipient(String text, ConversationContext context) {
+        return Optional.of(ParsedIntent.builder()
+            .intent(context.getCurrentIntent())
+            .amount(context.getAmount())
+            .recipientIdentifier(text.trim())
+            .confidence(CONFIDENCE)
+            .build());
+    }
+
+    private static Optional<ParsedIntent> parseConfirmation(String text, ConversationContext context) {
+        String normalized = text.trim().toLowerCase(Locale.ROOT);
+
+        if (CONFIRM_WORDS.contains(normalized)) {
+            return Optional.of(ParsedIntent.builder()
+                .intent(Intent.CONFIRM_TRANSACTION)
+                .confidence(CONFIDENCE)
+                .build());
+        }
+
+        if (CANCEL_WORDS.contains(normalized)) {
+            return Optional.of(ParsedIntent.builder()
+                .intent(Intent.CANCEL_TRANSACTION)
+                .confidence(CONFIDENCE)
+                .build());
+        }
+
+        return Optional.empty();
+    }
+
+    // The contact's name, with the number if it was given first
+    private static Optional<ParsedIntent> parseContactName(String text, ConversationContext context) {
+        String name = text.trim();
+        if (CANCEL_WORDS.contains(name.toLowerCase(Locale.ROOT))) {
+            return Optional.of(ParsedIntent.builder()
+                .intent(Intent.CANCEL_TRANSACTION)
+                .confidence(CONFIDENCE)
+                .build());
+        }
+
+        return Optional.of(ParsedIntent.builder()
+            .intent(Intent.ADD_CONTACT)
+            .recipientIdentifier(name)
+            .metadata(context.getRecipientPhone() != null
+                ? Map.of("phoneNumber", context.getRecipientPhone())
+                : Map.of())
+            .confidence(CONFIDENCE)
+            .build());
+    }
+
+    // The contact's number, normalised to 2547XXXXXXXX, for the name already given
+    private static Optional<ParsedIntent> parseContactPhone(String text, ConversationContext context) {
+        var matcher = PHONE.matcher(PHONE_SEPARATORS.matcher(text.trim()).replaceAll(""));
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(ParsedIntent.builder()
+            .intent(Intent.ADD_CONTACT)
+            .recipientIdentifier(context.getRecipient())
+            .metadata(Map.of("phoneNumber", "254" + matcher.group(1)))
+            .confidence(CONFIDENCE)
+            .build());
+    }
+}
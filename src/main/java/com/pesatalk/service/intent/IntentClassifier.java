@@ -0,0 +1,270 @@
+package com.pesatalk.service.intent;
+
+import com.pesatalk.model.enums.Intent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Multinomial logistic regression over hashed character n-grams and whole words. The
+// text is lower-cased, digits collapse to '0' and anything else to a space, so "tuma
+// 500 kwa mama" and "Tuma 1,000 kwa Mama!" share most features. Scoring is one pass
+// over the text into a per-intent score array, a few microseconds for a chat message.
+// Trained offline by IntentClassifierTrainer; immutable once loaded.
+public final class IntentClassifier {
+
+    public record Prediction(Intent intent, double probability) {}
+
+    public record Example(Intent intent, String text) {}
+
+    private static final int MAGIC = 0x50544943; // "PTIC"
+    private static final int VERSION = 1;
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final int WORD_SEED = 0x5bd1e995;
+    // Bounds on model headers, so a corrupt file cannot demand an enormous weight table
+    private static final int MAX_BUCKET_BITS = 20;
+    private static final int MAX_N = 8;
+
+    private final int minN;
+    private final int maxN;
+    private final int mask;
+    private final Intent[] intents;
+    private final float[] biases;
+    // Row-major by bucket, so one feature's weights for every intent sit together
+    private final float[] weights;
+
+    private IntentClassifier(int minN, int maxN, int bucketBits, Intent[] intents, float[] biases, float[] weights) {
+        this.minN = minN;
+        this.maxN = maxN;
+        this.mask = (1 << bucketBits) - 1;
+        this.intents = intents;
+        this.biases = biases;
+        this.weights = weights;
+    }
+
+    public Prediction predict(CharSequence text) {
+        int classes = intents.length;
+        double[] scores = new double[classes];
+        int features = accumulate(text, scores, null);
+        if (features == 0) {
+            return new Prediction(Intent.UNKNOWN, 0.0);
+        }
+
+        // Feature vectors are L2-normalised, so long messages do not get sharper scores
+        double scale = 1.0 / Math.sqrt(features);
+        int best = 0;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < classes; c++) {
+            scores[c] = scores[c] * scale + biases[c];
+            if (scores[c] > max) {
+                max = scores[c];
+                best = c;
+            }
+        }
+        double sum = 0;
+        for (int c = 0; c < classes; c++) {
+            sum += Math.exp(scores[c] - max);
+        }
+        return new Prediction(intents[best], 1.0 / sum);
+    }
+
+    public Set<Intent> intents() {
+        return new LinkedHashSet<>(List.of(intents));
+    }
+
+    // Adds each feature's weights into scores, or records its bucket in buckets when
+    // given one; returns the number of features
+    private int accumulate(CharSequence text, double[] scores, List<Integer> buckets) {
+        int length = text.length();
+        char[] window = new char[maxN];
+        int filled = 0;
+        int features = 0;
+        int wordHash = WORD_SEED;
+        boolean inWord = false;
+        char previous = ' ';
+
+        // A virtual space before and after the text marks word edges in the n-grams
+        for (int i = -1; i <= length; i++) {
+            char c = i < 0 || i == length ? ' ' : fold(text.charAt(i));
+            if (c == ' ' && previous == ' ' && i >= 0) {
+                continue;
+            }
+            previous = c;
+
+            System.arraycopy(window, 0, window, 1, maxN - 1);
+            window[0] = c;
+            filled = Math.min(filled + 1, maxN);
+
+            // N-grams ending at this character, newest character first
+            int hash = FNV_OFFSET;
+            for (int n = 1; n <= filled; n++) {
+                hash = (hash ^ window[n - 1]) * FNV_PRIME;
+                if (n >= minN && !(n == 1 && c == ' ')) {
+                    features++;
+                    add(hash, scores, buckets);
+                }
+            }
+
+            if (c != ' ') {
+                wordHash = (wordHash ^ c) * FNV_PRIME;
+                inWord = true;
+            } else if (inWord) {
+                features++;
+                add(wordHash, scores, buckets);
+                wordHash = WORD_SEED;
+                inWord = false;
+            }
+        }
+        return features;
+    }
+
+    private void add(int hash, double[] scores, List<Integer> buckets) {
+        int bucket = (hash ^ (hash >>> 16)) & mask;
+        if (buckets != null) {
+            buckets.add(bucket);
+            return;
+        }
+        int offset = bucket * intents.length;
+        for (int c = 0; c < intents.length; c++) {
+            scores[c] += weights[offset + c];
+        }
+    }
+
+    private static char fold(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c + ('a' - 'A'));
+        }
+        if (c >= '0' && c <= '9') {
+            return '0';
+        }
+        if ((c >= 'a' && c <= 'z') || (c >= 128 && Character.isLetter(c))) {
+            return Character.toLowerCase(c);
+        }
+        return ' ';
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(minN);
+        data.writeInt(maxN);
+        data.writeInt(Integer.numberOfTrailingZeros(mask + 1));
+        data.writeInt(intents.length);
+        for (Intent intent : intents) {
+            data.writeUTF(intent.name());
+        }
+        for (float bias : biases) {
+            data.writeFloat(bias);
+        }
+        for (float weight : weights) {
+            data.writeFloat(weight);
+        }
+        data.flush();
+    }
+
+    public static IntentClassifier read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not an intent classifier model");
+        }
+        int minN = data.readInt();
+        int maxN = data.readInt();
+        int bucketBits = data.readInt();
+        int classes = data.readInt();
+        if (minN < 1 || maxN < minN || maxN > MAX_N) {
+            throw new IOException("Corrupt intent classifier model: n-gram range " + minN + ".." + maxN);
+        }
+        if (bucketBits < 1 || bucketBits > MAX_BUCKET_BITS) {
+            throw new IOException("Corrupt intent classifier model: " + bucketBits + " bucket bits");
+        }
+        if (classes < 1 || classes > Intent.values().length) {
+            throw new IOException("Corrupt intent classifier model: " + classes + " classes");
+        }
+        Intent[] intents = new Intent[classes];
+        for (int c = 0; c < classes; c++) {
+            intents[c] = Intent.valueOf(data.readUTF());
+        }
+        float[] biases = new float[classes];
+        for (int c = 0; c < classes; c++) {
+            biases[c] = data.readFloat();
+        }
+        float[] weights = new float[(1 << bucketBits) * classes];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = data.readFloat();
+        }
+        return new IntentClassifier(minN, maxN, bucketBits, intents, biases, weights);
+    }
+
+    // Stochastic gradient descent on the softmax cross-entropy with L2 regularisation
+    public static IntentClassifier train(List<Example> examples, int bucketBits, int epochs, long seed) {
+        if (bucketBits < 1 || bucketBits > MAX_BUCKET_BITS) {
+            throw new IllegalArgumentException("bucketBits must be between 1 and " + MAX_BUCKET_BITS);
+        }
+        Intent[] intents = examples.stream().map(Example::intent).distinct().sorted().toArray(Intent[]::new);
+        int classes = intents.length;
+        IntentClassifier model = new IntentClassifier(
+            1, 4, bucketBits, intents, new float[classes], new float[(1 << bucketBits) * classes]);
+
+        List<int[]> featureSets = new ArrayList<>(examples.size());
+        List<Integer> labels = new ArrayList<>(examples.size());
+        for (Example example : examples) {
+            List<Integer> buckets = new ArrayList<>();
+            model.accumulate(example.text(), null, buckets);
+            featureSets.add(buckets.stream().mapToInt(Integer::intValue).toArray());
+            labels.add(List.of(intents).indexOf(example.intent()));
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < examples.size(); i++) {
+            order.add(i);
+        }
+        Random random = new Random(seed);
+        double lambda = 1e-6;
+        double[] scores = new double[classes];
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            Collections.shuffle(order, random);
+            double rate = 0.5 / (1 + epoch * 0.1);
+            for (int index : order) {
+                int[] buckets = featureSets.get(index);
+                if (buckets.length == 0) {
+                    continue;
+                }
+                double scale = 1.0 / Math.sqrt(buckets.length);
+                double max = Double.NEGATIVE_INFINITY;
+                for (int c = 0; c < classes; c++) {
+                    double score = model.biases[c];
+                    for (int bucket : buckets) {
+                        score += model.weights[bucket * classes + c] * scale;
+                    }
+                    scores[c] = score;
+                    max = Math.max(max, score);
+                }
+                double sum = 0;
+                for (int c = 0; c < classes; c++) {
+                    scores[c] = Math.exp(scores[c] - max);
+                    sum += scores[c];
+                }
+                int label = labels.get(index);
+                for (int c = 0; c < classes; c++) {
+                    double gradient = scores[c] / sum - (c == label ? 1 : 0);
+                    model.biases[c] -= (float) (rate * gradient);
+                    for (int bucket : buckets) {
+                        int w = bucket * classes + c;
+                        model.weights[w] -= (float) (rate * (gradient * scale + lambda * model.weights[w]));
+                    }
+                }
+            }
+        }
+        return model;
+    }
+}
@@ -0,0 +1,99 @@
+package com.pesatalk.service.intent;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Parse results for the short, frequent texts that dominate traffic ("balance", "help",
+// "airtime 100"), keyed on the trimmed, lower-cased text. Only texts whose parse cannot
+// depend on case qualify: short ASCII without '_' (button IDs are case-sensitive and
+// unique). Results naming a recipient are never stored, keeping PII out of the heap.
+@Component
+public class IntentParseCache {
+
+    private static final int MAX_KEY_LENGTH = 64;
+    // Rough heap cost of an entry besides its key: the key and value objects and a small map
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final Cache<Key, Object> cache;
+    private final Counter skipped;
+
+    public IntentParseCache(
+        MeterRegistry meterRegistry,
+        @Value("${intent.cache.max-bytes:1048576}") long maxBytes,
+        @Value("${intent.cache.expire-after-write:1h}") Duration expireAfterWrite
+    ) {
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((Key key, Object value) -> ENTRY_OVERHEAD_BYTES + key.text().length() * 2)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build();
+        this.skipped = Counter.builder("intent.parse.cache.skipped")
+            .description("Texts parsed without the cache because they cannot be cached safely")
+            .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "intent.parse");
+    }
+
+    // Returns the cached result for this parser and text, or parses it and keeps the
+    // result if it passes the cacheable check
+    @SuppressWarnings("unchecked")
+    public <T> T get(String parser, String text, Function<String, T> parse, Predicate<T> cacheable) {
+        String normalized = normalize(text);
+        if (normalized == null) {
+            skipped.increment();
+            return parse.apply(text);
+        }
+
+        Key key = new Key(parser, normalized);
+        Object cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+
+        T result = parse.apply(text);
+        if (result != null && cacheable.test(result)) {
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onKeywordsReloaded(KeywordIntentParser.KeywordsReloadedEvent event) {
+        invalidateAll();
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.trim();
+        if (trimmed.isEmpty() || trimmed.length() > MAX_KEY_LENGTH) {
+            return null;
+        }
+        char[] folded = new char[trimmed.length()];
+        for (int i = 0; i < folded.length; i++) {
+            char c = trimmed.charAt(i);
+            if (c >= 128 || c == '_') {
+                return null;
+            }
+            folded[i] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return new String(folded);
+    }
+
+    private record Key(String parser, String text) {}
+}
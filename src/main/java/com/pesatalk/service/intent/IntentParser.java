@@ -3,6 +3,7 @@ package com.pesatalk.service.intent;
 import com.pesatalk.model.enums.Intent;
 
 import java.util.Optional;
+import java.util.Set;
 
 public interface IntentParser {
 
@@ -11,4 +12,10 @@ public interface IntentParser {
     int getPriority();
 
     Optional<ParsedIntent> parse(String text);
+
+    // Lead tokens (see LeadToken) that every text this parser can match starts with.
+    // Empty means the parser can match anywhere in the text and is always consulted.
+    default Set<String> getLeadTokens() {
+        return Set.of();
+    }
 }
@@ -1,13 +1,27 @@
 package com.pesatalk.service.intent;
 
-import com.pesatalk.model.enums.Intent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class IntentParsingOrchestrator {
@@ -16,16 +30,72 @@ public class IntentParsingOrchestrator {
 
     private final List<IntentParser> parsers;
     private final InteractiveResponseParser interactiveParser;
+    private final IntentParseCache parseCache;
+    private final ContextualResponseParser contextualParser = new ContextualResponseParser();
+
+    // Parsers to try for each lead token, in priority order. A parser is left out of a
+    // lead's list only when none of its grammars can start with that token, so the
+    // result is the same as trying every parser. Unlisted leads get the always-on ones.
+    private final Map<String, List<IntentParser>> parsersByLead;
+    private final List<IntentParser> unanchoredParsers;
+
+    // Fan-out mode: parsers below fanOutBelowPriority run concurrently once the ones above
+    // have missed, and whatever they return by the deadline competes on confidence
+    private final Executor parserExecutor;
+    private final boolean fanOutEnabled;
+    private final int fanOutBelowPriority;
+    private final Duration fanOutDeadline;
+    private final Map<IntentParser, Timer> parserTimers = new IdentityHashMap<>();
+    private final Map<IntentParser, Counter> parserTimeouts = new IdentityHashMap<>();
+
+    // Results that missed the deadline are not cached, so a slow moment is not remembered
+    private record Outcome(ParsedIntent parsed, boolean complete) {}
 
     public IntentParsingOrchestrator(
         List<IntentParser> parsers,
-        InteractiveResponseParser interactiveParser
+        InteractiveResponseParser interactiveParser,
+        IntentParseCache parseCache,
+        MeterRegistry meterRegistry,
+        @Qualifier("intentParserExecutor") Executor parserExecutor,
+        @Value("${intent.fan-out.enabled:false}") boolean fanOutEnabled,
+        @Value("${intent.fan-out.below-priority:90}") int fanOutBelowPriority,
+        @Value("${intent.fan-out.deadline:25ms}") Duration fanOutDeadline
     ) {
         // Sort parsers by priority (highest first)
         this.parsers = parsers.stream()
             .sorted(Comparator.comparingInt(IntentParser::getPriority).reversed())
             .toList();
         this.interactiveParser = interactiveParser;
+        this.parseCache = parseCache;
+        this.unanchoredParsers = this.parsers.stream()
+            .filter(parser -> parser.getLeadTokens().isEmpty())
+            .toList();
+
+        Map<String, List<IntentParser>> byLead = new HashMap<>();
+        this.parsers.forEach(parser -> parser.getLeadTokens().forEach(lead ->
+            byLead.computeIfAbsent(lead, key -> this.parsers.stream()
+                .filter(candidate -> candidate.getLeadTokens().isEmpty()
+                    || candidate.getLeadTokens().contains(key))
+                .toList())
+        ));
+        this.parsersByLead = Map.copyOf(byLead);
+
+        this.parserExecutor = parserExecutor;
+        this.fanOutEnabled = fanOutEnabled;
+        this.fanOutBelowPriority = fanOutBelowPriority;
+        this.fanOutDeadline = fanOutDeadline;
+        for (IntentParser parser : this.parsers) {
+            String name = parser.getClass().getSimpleName();
+            parserTimers.put(parser, Timer.builder("intent.parser.duration")
+                .description("Time spent in each intent parser")
+                .tag("parser", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+            parserTimeouts.put(parser, Counter.builder("intent.parser.timeouts")
+                .description("Fan-out parser results discarded for missing the deadline")
+                .tag("parser", name)
+                .register(meterRegistry));
+        }
 
         log.info("Initialized IntentParsingOrchestrator with {} parsers", parsers.size());
         parsers.forEach(p -> log.debug("Parser: {} (priority: {})",
@@ -37,50 +107,116 @@ public class IntentParsingOrchestrator {
             return ParsedIntent.unknown();
         }
 
+        return parseCache.get("orchestrator", text, this::parseUncached,
+            outcome -> outcome.complete() && outcome.parsed().recipientIdentifier() == null).parsed();
+    }
+
+    private Outcome parseUncached(String text) {
         log.debug("Parsing text: {}", text.length() > 50 ? text.substring(0, 50) + "..." : text);
 
         ParsedIntent bestMatch = null;
         double bestConfidence = 0.0;
+        boolean complete = true;
+
+        // Try each parser that could match this opening word, in priority order
+        List<IntentParser> candidates = parsersByLead.getOrDefault(LeadToken.of(text), unanchoredParsers);
+        int sequential = fanOutEnabled ? countSequential(candidates) : candidates.size();
+
+        List<Optional<ParsedIntent>> results = new ArrayList<>(candidates.size());
+        for (IntentParser parser : candidates.subList(0, sequential)) {
+            Optional<ParsedIntent> result = timedParse(parser, text);
+            // If we get a high-confidence match, return immediately
+            if (result.isPresent() && result.get().confidence() >= 0.9) {
+                log.info("High confidence match: {} ({})", result.get().intent(), result.get().confidence());
+                return new Outcome(result.get(), true);
+            }
+            results.add(result);
+        }
+        if (sequential < candidates.size()) {
+            complete = fanOut(candidates.subList(sequential, candidates.size()), text, results);
+        }
 
-        // Try each parser in priority order
-        for (IntentParser parser : parsers) {
-            try {
-                Optional<ParsedIntent> result = parser.parse(text);
-
-                if (result.isPresent()) {
-                    ParsedIntent parsed = result.get();
-
-                    log.debug("Parser {} returned intent {} with confidence {}",
-                        parser.getClass().getSimpleName(),
-                        parsed.intent(),
-                        parsed.confidence());
-
-                    // If we get a high-confidence match, return immediately
-                    if (parsed.confidence() >= 0.9) {
-                        log.info("High confidence match: {} ({})",
-                            parsed.intent(), parsed.confidence());
-                        return parsed;
-                    }
-
-                    // Otherwise, track the best match
-                    if (parsed.confidence() > bestConfidence) {
-                        bestMatch = parsed;
-                        bestConfidence = parsed.confidence();
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Error in parser {}: {}",
-                    parser.getClass().getSimpleName(), e.getMessage());
+        // Results are in priority order, so ties go to the higher-priority parser
+        for (Optional<ParsedIntent> result : results) {
+            if (result.isEmpty()) {
+                continue;
+            }
+            ParsedIntent parsed = result.get();
+            if (parsed.confidence() >= 0.9) {
+                log.info("High confidence match: {} ({})", parsed.intent(), parsed.confidence());
+                return new Outcome(parsed, complete);
+            }
+            if (parsed.confidence() > bestConfidence) {
+                bestMatch = parsed;
+                bestConfidence = parsed.confidence();
             }
         }
 
         if (bestMatch != null) {
             log.info("Best match: {} (confidence: {})", bestMatch.intent(), bestMatch.confidence());
-            return bestMatch;
+            return new Outcome(bestMatch, complete);
         }
 
         log.debug("No intent matched for input");
-        return ParsedIntent.unknown();
+        return new Outcome(ParsedIntent.unknown(), complete);
+    }
+
+    private int countSequential(List<IntentParser> candidates) {
+        int sequential = 0;
+        while (sequential < candidates.size() && candidates.get(sequential).getPriority() >= fanOutBelowPriority) {
+            sequential++;
+        }
+        return sequential;
+    }
+
+    // Runs the parsers concurrently and adds their results to results in priority order,
+    // empty for any that failed or missed the deadline; returns false if any missed it
+    private boolean fanOut(List<IntentParser> parsers, String text, List<Optional<ParsedIntent>> results) {
+        List<CompletableFuture<Optional<ParsedIntent>>> futures = parsers.stream()
+            .map(parser -> CompletableFuture.supplyAsync(() -> timedParse(parser, text), parserExecutor))
+            .toList();
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .get(fanOutDeadline.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Intent parsers missed the {} deadline", fanOutDeadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // timedParse handles parser errors, so this cannot happen
+        }
+
+        boolean complete = true;
+        for (int i = 0; i < parsers.size(); i++) {
+            CompletableFuture<Optional<ParsedIntent>> future = futures.get(i);
+            if (future.isDone()) {
+                results.add(future.join());
+            } else {
+                complete = false;
+                parserTimeouts.get(parsers.get(i)).increment();
+                future.cancel(false);
+                results.add(Optional.empty());
+            }
+        }
+        return complete;
+    }
+
+    private Optional<ParsedIntent> timedParse(IntentParser parser, String text) {
+        long start = System.nanoTime();
+        try {
+            Optional<ParsedIntent> result = parser.parse(text);
+            result.ifPresent(parsed -> log.debug("Parser {} returned intent {} with confidence {}",
+                parser.getClass().getSimpleName(),
+                parsed.intent(),
+                parsed.confidence()));
+            return result;
+        } catch (Exception e) {
+            log.error("Error in parser {}: {}",
+                parser.getClass().getSimpleName(), e.getMessage());
+            return Optional.empty();
+        } finally {
+            parserTimers.get(parser).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
     }
 
     public ParsedIntent parseButtonResponse(String buttonId) {
@@ -96,7 +232,7 @@ public class IntentParsingOrchestrator {
     public ParsedIntent parseWithContext(String text, ConversationContext context) {
         // First, try to parse as a direct response to a pending question
         if (context != null && context.hasPendingQuestion()) {
-            Optional<ParsedIntent> contextualIntent = parseContextualResponse(text, context);
+            Optional<ParsedIntent> contextualIntent = contextualParser.parse(text, context);
             if (contextualIntent.isPresent()) {
                 return contextualIntent.get();
             }
@@ -105,66 +241,4 @@ public class IntentParsingOrchestrator {
         // Otherwise, parse normally
         return parseText(text);
     }
-
-    private Optional<ParsedIntent> parseContextualResponse(String text, ConversationContext context) {
-        return switch (context.getPendingQuestion()) {
-            case AWAITING_AMOUNT -> parseAmountResponse(text, context);
-            case AWAITING_RECIPIENT -> parseRecipientResponse(text, context);
-            case AWAITING_CONFIRMATION -> parseConfirmationResponse(text);
-            default -> Optional.empty();
-        };
-    }
-
-    private Optional<ParsedIntent> parseAmountResponse(String text, ConversationContext context) {
-        String normalized = text.trim().replaceAll("[,\\s]", "");
-
-        // Remove "kes" prefix if present
-        normalized = normalized.replaceAll("(?i)^kes\\s*", "");
-
-        try {
-            java.math.BigDecimal amount = new java.math.BigDecimal(normalized);
-            return Optional.of(ParsedIntent.builder()
-                .intent(context.getCurrentIntent())
-                .amount(amount)
-                .recipientIdentifier(context.getRecipient())
-                .confidence(0.95)
-                .build());
-        } catch (NumberFormatException e) {
-            return Optional.empty();
-        }
-    }
-
-    private Optional<ParsedIntent> parseRecipientResponse(String text, ConversationContext context) {
-        String recipient = text.trim();
-        if (recipient.isEmpty()) {
-            return Optional.empty();
-        }
-
-        return Optional.of(ParsedIntent.builder()
-            .intent(context.getCurrentIntent())
-            .amount(context.getAmount())
-            .recipientIdentifier(recipient)
-            .confidence(0.95)
-            .build());
-    }
-
-    private Optional<ParsedIntent> parseConfirmationResponse(String text) {
-        String normalized = text.trim().toLowerCase();
-
-        if (normalized.matches("^(yes|confirm|ndio|sawa|ok|okay|proceed)$")) {
-            return Optional.of(ParsedIntent.builder()
-                .intent(Intent.CONFIRM_TRANSACTION)
-                .confidence(0.95)
-                .build());
-        }
-
-        if (normalized.matches("^(no|cancel|hapana|acha|stop)$")) {
-            return Optional.of(ParsedIntent.builder()
-                .intent(Intent.CANCEL_TRANSACTION)
-                .confidence(0.95)
-                .build());
-        }
-
-        return Optional.empty();
-    }
 }
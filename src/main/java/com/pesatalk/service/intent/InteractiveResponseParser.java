@@ -5,6 +5,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,6 +27,12 @@ public class InteractiveResponseParser implements IntentParser {
         return 200; // Highest priority - explicit button responses
     }
 
+    @Override
+    public Set<String> getLeadTokens() {
+        // Button and list reply IDs
+        return Set.of("confirm", "cancel", "select");
+    }
+
     @Override
     public Optional<ParsedIntent> parse(String text) {
         if (text == null || text.isBlank()) {
@@ -0,0 +1,200 @@
+package com.pesatalk.service.intent;
+
+import com.pesatalk.model.enums.Intent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.TreeSet;
+
+// Aho-Corasick automaton over every keyword of every group, compiled into a dense
+// transition table so one left-to-right scan of the message reports every keyword it
+// contains. Immutable once built; KeywordIntentParser swaps in a new one on reload.
+final class KeywordAutomaton {
+
+    record Keyword(String text, Intent intent, double confidence) {}
+
+    record Match(Keyword keyword, boolean exact) {}
+
+    private static final int ROOT = 0;
+
+    private final List<Keyword> keywords;
+    private final int[] asciiSymbols;
+    private final char[] otherSymbols;
+    private final int asciiCount;
+    private final int alphabetSize;
+    private final int[] transitions;
+    // Keyword indexes that end in each state, including those reached via failure links
+    private final int[][] outputs;
+
+    private KeywordAutomaton(List<Keyword> keywords, int[] asciiSymbols, char[] otherSymbols,
+                             int asciiCount, int[] transitions, int[][] outputs) {
+        this.keywords = keywords;
+        this.asciiSymbols = asciiSymbols;
+        this.otherSymbols = otherSymbols;
+        this.asciiCount = asciiCount;
+        this.alphabetSize = asciiCount + otherSymbols.length;
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+
+    int size() {
+        return keywords.size();
+    }
+
+    // Best keyword in the trimmed text, compared case-insensitively: an exact match beats
+    // one contained in a longer message, then the longest keyword, then the higher group
+    // confidence, then whichever keyword was declared first
+    Match bestMatch(String text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int length = end - start;
+
+        int best = -1;
+        boolean bestExact = false;
+        int state = ROOT;
+        for (int i = start; i < end; i++) {
+            int symbol = symbolOf(Character.toLowerCase(text.charAt(i)));
+            state = symbol < 0 ? ROOT : transitions[state * alphabetSize + symbol];
+            for (int candidate : outputs[state]) {
+                boolean exact = keywords.get(candidate).text().length() == length;
+                if (best < 0 || isBetter(candidate, exact, best, bestExact)) {
+                    best = candidate;
+                    bestExact = exact;
+                }
+            }
+        }
+        return best < 0 ? null : new Match(keywords.get(best), bestExact);
+    }
+
+    private boolean isBetter(int candidate, boolean candidateExact, int current, boolean currentExact) {
+        if (candidateExact != currentExact) {
+            return candidateExact;
+        }
+        Keyword a = keywords.get(candidate);
+        Keyword b = keywords.get(current);
+        if (a.text().length() != b.text().length()) {
+            return a.text().length() > b.text().length();
+        }
+        if (a.confidence() != b.confidence()) {
+            return a.confidence() > b.confidence();
+        }
+        return candidate < current;
+    }
+
+    private int symbolOf(char c) {
+        if (c < 128) {
+            return asciiSymbols[c];
+        }
+        int index = Arrays.binarySearch(otherSymbols, c);
+        return index >= 0 ? asciiCount + index : -1;
+    }
+
+    static KeywordAutomaton compile(List<Keyword> declared) {
+        List<Keyword> keywords = declared.stream()
+            .map(k -> new Keyword(k.text().trim().toLowerCase(Locale.ROOT), k.intent(), k.confidence()))
+            .filter(k -> !k.text().isEmpty())
+            .toList();
+
+        // Alphabet: ASCII keyword characters indexed directly, anything else by binary search
+        TreeSet<Character> chars = new TreeSet<>();
+        keywords.forEach(k -> k.text().chars().forEach(c -> chars.add((char) c)));
+        int[] asciiSymbols = new int[128];
+        Arrays.fill(asciiSymbols, -1);
+        List<Character> others = new ArrayList<>();
+        int next = 0;
+        for (char c : chars) {
+            if (c < 128) {
+                asciiSymbols[c] = next++;
+            } else {
+                others.add(c);
+            }
+        }
+        char[] otherSymbols = new char[others.size()];
+        for (int i = 0; i < otherSymbols.length; i++) {
+            otherSymbols[i] = others.get(i);
+        }
+        // Symbols are numbered ASCII first, so a non-ASCII one is offset by the ASCII count
+        int asciiCount = next;
+        int alphabetSize = asciiCount + otherSymbols.length;
+        KeywordAutomaton shape = new KeywordAutomaton(keywords, asciiSymbols, otherSymbols, asciiCount, null, null);
+
+        // Trie of all keywords
+        List<int[]> gotos = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        gotos.add(newRow(alphabetSize));
+        ends.add(new ArrayList<>());
+        for (int k = 0; k < keywords.size(); k++) {
+            int state = ROOT;
+            for (char c : keywords.get(k).text().toCharArray()) {
+                int symbol = shape.symbolOf(c);
+                if (gotos.get(state)[symbol] < 0) {
+                    gotos.get(state)[symbol] = gotos.size();
+                    gotos.add(newRow(alphabetSize));
+                    ends.add(new ArrayList<>());
+                }
+                state = gotos.get(state)[symbol];
+            }
+            ends.get(state).add(k);
+        }
+
+        // Breadth-first failure links, folding them into the goto table to make a DFA
+        int states = gotos.size();
+        int[] fail = new int[states];
+        int[][] outputs = new int[states][];
+        outputs[ROOT] = toArray(ends.get(ROOT));
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            int child = gotos.get(ROOT)[symbol];
+            if (child < 0) {
+                gotos.get(ROOT)[symbol] = ROOT;
+            } else {
+                fail[child] = ROOT;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            List<Integer> out = new ArrayList<>(ends.get(state));
+            for (int inherited : outputs[fail[state]]) {
+                out.add(inherited);
+            }
+            outputs[state] = toArray(out);
+
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int child = gotos.get(state)[symbol];
+                if (child < 0) {
+                    gotos.get(state)[symbol] = gotos.get(fail[state])[symbol];
+                } else {
+                    fail[child] = gotos.get(fail[state])[symbol];
+                    queue.add(child);
+                }
+            }
+        }
+
+        int[] transitions = new int[states * alphabetSize];
+        for (int state = 0; state < states; state++) {
+            System.arraycopy(gotos.get(state), 0, transitions, state * alphabetSize, alphabetSize);
+        }
+        return new KeywordAutomaton(keywords, asciiSymbols, otherSymbols, asciiCount, transitions, outputs);
+    }
+
+    private static int[] newRow(int alphabetSize) {
+        int[] row = new int[alphabetSize];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -1,14 +1,35 @@
 package com.pesatalk.service.intent;
 
 import com.pesatalk.model.enums.Intent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
 
 @Component
-public class KeywordIntentParser implements IntentParser {
+public class KeywordIntentParser implements IntentParser, ApplicationEventPublisherAware {
+
+    private static final Logger log = LoggerFactory.getLogger(KeywordIntentParser.class);
+    private static final double DEFAULT_EXTRA_CONFIDENCE = 0.85;
+
+    public record KeywordsReloadedEvent(int keywordCount) {}
 
     private record KeywordGroup(Intent intent, List<String> keywords, double confidence) {}
 
@@ -39,6 +60,26 @@ public class KeywordIntentParser implements IntentParser {
         ), 0.85)
     );
 
+    // Extra keyword sets (e.g. Sheng) as properties files of <INTENT>.keywords=a, b, c
+    // and optional <INTENT>.confidence, merged after the built-in groups
+    private final String extraKeywordsLocation;
+
+    // Swapped whole on reload, so the hot path reads one volatile and never locks
+    private volatile KeywordAutomaton automaton;
+    private volatile String loadedExtraKeywords = "";
+    private ApplicationEventPublisher eventPublisher;
+
+    public KeywordIntentParser(@Value("${intent.keywords.location:}") String extraKeywordsLocation) {
+        this.extraKeywordsLocation = extraKeywordsLocation;
+        this.automaton = compile(List.of());
+        reloadExtraKeywords();
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
     @Override
     public Intent getSupportedIntent() {
         return null; // Supports multiple intents
@@ -55,25 +96,92 @@ public class KeywordIntentParser implements IntentParser {
             return Optional.empty();
         }
 
-        String normalized = text.trim().toLowerCase();
-
-        for (KeywordGroup group : KEYWORD_GROUPS) {
-            for (String keyword : group.keywords()) {
-                if (normalized.contains(keyword) || normalized.equals(keyword)) {
-                    // Exact match gets full confidence, contains gets slightly less
-                    double confidence = normalized.equals(keyword)
-                        ? group.confidence()
-                        : group.confidence() - 0.1;
-
-                    return Optional.of(ParsedIntent.builder()
-                        .intent(group.intent())
-                        .confidence(confidence)
-                        .metadata(Map.of("matchedKeyword", keyword))
-                        .build());
-                }
+        KeywordAutomaton.Match match = automaton.bestMatch(text);
+        if (match == null) {
+            return Optional.empty();
+        }
+
+        // Exact match gets full confidence, contains gets slightly less
+        double confidence = match.exact()
+            ? match.keyword().confidence()
+            : match.keyword().confidence() - 0.1;
+
+        return Optional.of(ParsedIntent.builder()
+            .intent(match.keyword().intent())
+            .confidence(confidence)
+            .metadata(Map.of("matchedKeyword", match.keyword().text()))
+            .build());
+    }
+
+    @Scheduled(fixedDelayString = "${intent.keywords.reload-interval-ms:60000}")
+    public void reloadExtraKeywords() {
+        if (extraKeywordsLocation == null || extraKeywordsLocation.isBlank()) {
+            return;
+        }
+
+        try {
+            String content = readExtraKeywords();
+            if (content.equals(loadedExtraKeywords)) {
+                return;
+            }
+            List<KeywordGroup> extra = parseExtraKeywords(content);
+            KeywordAutomaton compiled = compile(extra);
+            automaton = compiled;
+            loadedExtraKeywords = content;
+            log.info("Loaded {} extra keyword groups, {} keywords in total", extra.size(), compiled.size());
+            // Lets cached parse results made with the old keywords be dropped
+            if (eventPublisher != null) {
+                eventPublisher.publishEvent(new KeywordsReloadedEvent(compiled.size()));
+            }
+        } catch (Exception e) {
+            // Keep matching with the keywords already loaded
+            log.warn("Failed to load keywords from {}: {}", extraKeywordsLocation, e.getMessage());
+        }
+    }
+
+    private String readExtraKeywords() throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(extraKeywordsLocation);
+        Arrays.sort(resources, Comparator.comparing(Resource::getDescription));
+        StringBuilder content = new StringBuilder();
+        for (Resource resource : resources) {
+            try (InputStream in = resource.getInputStream()) {
+                content.append(new String(in.readAllBytes(), StandardCharsets.UTF_8)).append('\n');
             }
         }
+        return content.toString();
+    }
 
-        return Optional.empty();
+    private List<KeywordGroup> parseExtraKeywords(String content) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new StringReader(content));
+
+        List<KeywordGroup> groups = new ArrayList<>();
+        for (String key : properties.stringPropertyNames().stream().sorted().toList()) {
+            if (!key.endsWith(".keywords")) {
+                continue;
+            }
+            String intentName = key.substring(0, key.length() - ".keywords".length());
+            String confidence = properties.getProperty(intentName + ".confidence");
+            groups.add(new KeywordGroup(
+                Intent.valueOf(intentName.trim()),
+                Arrays.stream(properties.getProperty(key).split(","))
+                    .map(String::trim)
+                    .filter(keyword -> !keyword.isEmpty())
+                    .toList(),
+                confidence != null ? Double.parseDouble(confidence.trim()) : DEFAULT_EXTRA_CONFIDENCE
+            ));
+        }
+        return groups;
+    }
+
+    private static KeywordAutomaton compile(List<KeywordGroup> extra) {
+        List<KeywordAutomaton.Keyword> keywords = new ArrayList<>();
+        for (List<KeywordGroup> groups : List.of(KEYWORD_GROUPS, extra)) {
+            for (KeywordGroup group : groups) {
+                group.keywords().forEach(keyword ->
+                    keywords.add(new KeywordAutomaton.Keyword(keyword, group.intent(), group.confidence())));
+            }
+        }
+        return KeywordAutomaton.compile(keywords);
     }
 }
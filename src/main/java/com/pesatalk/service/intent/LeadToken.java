@@ -0,0 +1,42 @@
+package com.pesatalk.service.intent;
+
+// The word a message opens with, used to route it to the parsers whose grammars can
+// start that way. Only ASCII letters are collected, lower-cased, because every grammar
+// opens with an ASCII keyword under (?i) matching; a leading digit maps to NUMBER.
+public final class LeadToken {
+
+    public static final String NUMBER = "#";
+
+    private LeadToken() {
+    }
+
+    public static String of(String text) {
+        int length = text.length();
+        int start = 0;
+        // Same leading characters String.trim() drops before the parsers match
+        while (start < length && text.charAt(start) <= ' ') {
+            start++;
+        }
+        if (start == length) {
+            return "";
+        }
+
+        char first = text.charAt(start);
+        if (first >= '0' && first <= '9') {
+            return NUMBER;
+        }
+
+        StringBuilder token = new StringBuilder(12);
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                token.append((char) (c + ('a' - 'A')));
+            } else if (c >= 'a' && c <= 'z') {
+                token.append(c);
+            } else {
+                break;
+            }
+        }
+        return token.toString();
+    }
+}
@@ -7,6 +7,7 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -57,6 +58,12 @@ public class SendMoneyIntentParser implements IntentParser {
         return 100; // High priority
     }
 
+    @Override
+    public Set<String> getLeadTokens() {
+        // Verbs of the verb-first patterns, plus "kes" or a digit for "1500 to john"
+        return Set.of("send", "transfer", "pay", "give", "tuma", "peleka", "kes", LeadToken.NUMBER);
+    }
+
     @Override
     public Optional<ParsedIntent> parse(String text) {
         if (text == null || text.isBlank()) {
@@ -71,19 +78,19 @@ public class SendMoneyIntentParser implements IntentParser {
             Matcher matcher = pattern.matcher(normalized);
 
             if (matcher.matches()) {
-                String amountStr;
+                int amountGroup;
                 String recipient;
 
                 // Pattern at index 1 has reversed order (recipient, amount)
                 if (i == 1) {
                     recipient = matcher.group(1).trim();
-                    amountStr = matcher.group(2);
+                    amountGroup = 2;
                 } else {
-                    amountStr = matcher.group(1);
+                    amountGroup = 1;
                     recipient = matcher.group(2).trim();
                 }
 
-                BigDecimal amount = parseAmount(amountStr);
+                BigDecimal amount = AmountScanner.parse(normalized, matcher.start(amountGroup), matcher.end(amountGroup));
                 if (amount == null) {
                     continue;
                 }
@@ -107,19 +114,6 @@ public class SendMoneyIntentParser implements IntentParser {
         return Optional.empty();
     }
 
-    private BigDecimal parseAmount(String amountStr) {
-        if (amountStr == null || amountStr.isBlank()) {
-            return null;
-        }
-
-        try {
-            String cleaned = amountStr.replaceAll("[,\\s]", "");
-            return new BigDecimal(cleaned);
-        } catch (NumberFormatException e) {
-            return null;
-        }
-    }
-
     private double calculateConfidence(String text, BigDecimal amount, String recipient, int patternIndex) {
         double confidence = 0.7; // Base confidence for pattern match
 
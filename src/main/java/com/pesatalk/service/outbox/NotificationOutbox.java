@@ -0,0 +1,99 @@
+package com.pesatalk.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pesatalk.integration.whatsapp.dto.WhatsAppMessageRequest;
+import com.pesatalk.model.OutboxNotification;
+import com.pesatalk.repository.OutboxNotificationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+// Queues user notifications in the caller's transaction, so a message goes out only if
+// the state change it reports commits, and is not lost if the node dies right after.
+// NotificationOutboxRelay sends them. Use NotificationService directly for replies that
+// report no database change.
+@Service
+public class NotificationOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationOutbox.class);
+
+    public record QueuedMessage(String recipientWhatsAppId, String message, String dedupKey) {}
+
+    private final OutboxNotificationRepository repository;
+    private final ObjectMapper objectMapper;
+
+    public NotificationOutbox(OutboxNotificationRepository repository, ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueMessage(String recipientWhatsAppId, String message) {
+        enqueue(recipientWhatsAppId, message, null, null);
+    }
+
+    // A message with a dedupKey already in the outbox is dropped, e.g. "tx:<id>:COMPLETED"
+    // for a callback Daraja delivers twice
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueMessage(String recipientWhatsAppId, String message, String dedupKey) {
+        enqueue(recipientWhatsAppId, message, null, dedupKey);
+    }
+
+    // One dedup lookup and batch insert for many messages, for jobs that change rows in bulk
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueMessages(List<QueuedMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        List<String> dedupKeys = messages.stream().map(QueuedMessage::dedupKey).filter(Objects::nonNull).toList();
+        Set<String> queued = dedupKeys.isEmpty() ? Set.of() : repository.findExistingDedupKeys(dedupKeys);
+        Instant now = Instant.now();
+        repository.saveAll(messages.stream()
+            .filter(message -> message.dedupKey() == null || !queued.contains(message.dedupKey()))
+            .map(message -> OutboxNotification.builder()
+                .recipientWhatsAppId(message.recipientWhatsAppId())
+                .body(message.message())
+                .dedupKey(message.dedupKey())
+                .nextAttemptAt(now)
+                .build())
+            .toList());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueInteractiveButtons(
+        String recipientWhatsAppId,
+        String bodyText,
+        List<WhatsAppMessageRequest.Button> buttons,
+        String dedupKey
+    ) {
+        try {
+            enqueue(recipientWhatsAppId, bodyText, objectMapper.writeValueAsString(buttons), dedupKey);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialise reply buttons", e);
+        }
+    }
+
+    private void enqueue(String recipientWhatsAppId, String body, String buttons, String dedupKey) {
+        if (dedupKey != null && repository.existsByDedupKey(dedupKey)) {
+            log.debug("Notification {} already queued, skipping", dedupKey);
+            return;
+        }
+
+        repository.save(OutboxNotification.builder()
+            .recipientWhatsAppId(recipientWhatsAppId)
+            .body(body)
+            .buttons(buttons)
+            .dedupKey(dedupKey)
+            .nextAttemptAt(Instant.now())
+            .build());
+    }
+}
@@ -0,0 +1,170 @@
+package com.pesatalk.service.outbox;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pesatalk.exception.WhatsAppException;
+import com.pesatalk.integration.whatsapp.dto.WhatsAppMessageRequest;
+import com.pesatalk.model.OutboxNotification;
+import com.pesatalk.model.enums.NotificationStatus;
+import com.pesatalk.repository.OutboxNotificationRepository;
+import com.pesatalk.service.NotificationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Drains the notification outbox in batches. Recipients are sent to concurrently, but
+// each recipient's messages go one at a time in the order they were written, and a
+// message waiting on a retry holds back the ones after it. Delivery is at least once:
+// a message sent just before the node dies is sent again, since it is still PENDING.
+@Component
+public class NotificationOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationOutboxRelay.class);
+    private static final TypeReference<List<WhatsAppMessageRequest.Button>> BUTTONS = new TypeReference<>() {};
+
+    private final OutboxNotificationRepository repository;
+    private final NotificationService notificationService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final Duration sendTimeout;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration retention;
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter failed;
+
+    public NotificationOutboxRelay(
+        OutboxNotificationRepository repository,
+        NotificationService notificationService,
+        ObjectMapper objectMapper,
+        TransactionTemplate transactionTemplate,
+        MeterRegistry meterRegistry,
+        @Value("${notifications.outbox.batch-size:200}") int batchSize,
+        @Value("${notifications.outbox.concurrency:20}") int concurrency,
+        @Value("${notifications.outbox.max-attempts:8}") int maxAttempts,
+        @Value("${notifications.outbox.send-timeout:20s}") Duration sendTimeout,
+        @Value("${notifications.outbox.initial-backoff:2s}") Duration initialBackoff,
+        @Value("${notifications.outbox.max-backoff:5m}") Duration maxBackoff,
+        @Value("${notifications.outbox.retention:7d}") Duration retention
+    ) {
+        this.repository = repository;
+        this.notificationService = notificationService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.sendTimeout = sendTimeout;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.retention = retention;
+        this.sent = Counter.builder("notifications.outbox.sent").register(meterRegistry);
+        this.retried = Counter.builder("notifications.outbox.retried").register(meterRegistry);
+        this.failed = Counter.builder("notifications.outbox.failed")
+            .description("Notifications given up on after max-attempts")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.outbox.relay-interval-ms:500}", scheduler = "outboundJobScheduler")
+    @SchedulerLock(name = "relayNotificationOutbox", lockAtMostFor = "5m")
+    public void relay() {
+        List<OutboxNotification> batch = repository.findDueInOrder(
+            NotificationStatus.PENDING, Instant.now(), PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<OutboxNotification>> byRecipient = new LinkedHashMap<>();
+        batch.forEach(notification -> byRecipient
+            .computeIfAbsent(notification.getRecipientWhatsAppId(), key -> new ArrayList<>())
+            .add(notification));
+
+        List<OutboxNotification> attempted = Flux.fromIterable(byRecipient.values())
+            .flatMap(this::sendInOrder, concurrency)
+            .collectList()
+            .block();
+        if (attempted == null || attempted.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> repository.saveAll(attempted));
+        log.debug("Relayed {} of {} pending notifications", attempted.size(), batch.size());
+    }
+
+    @Scheduled(cron = "0 30 2 * * ?") // Daily at 2:30 AM
+    @SchedulerLock(name = "cleanupNotificationOutbox", lockAtMostFor = "30m", lockAtLeastFor = "1m")
+    public void cleanupSent() {
+        int deleted = transactionTemplate.execute(status ->
+            repository.deleteByStatusUpdatedBefore(NotificationStatus.SENT, Instant.now().minus(retention)));
+        log.info("Deleted {} sent notifications older than {}", deleted, retention);
+    }
+
+    // Stops at the first message that fails, so nothing overtakes it
+    private Flux<OutboxNotification> sendInOrder(List<OutboxNotification> messages) {
+        return Flux.fromIterable(messages)
+            .concatMap(this::send)
+            .takeUntil(notification -> notification.getStatus() != NotificationStatus.SENT);
+    }
+
+    private Mono<OutboxNotification> send(OutboxNotification notification) {
+        return deliver(notification)
+            .timeout(sendTimeout)
+            .switchIfEmpty(Mono.error(() -> new IllegalStateException("WhatsApp returned no message ID")))
+            .map(messageId -> {
+                notification.markSent(messageId);
+                sent.increment();
+                return notification;
+            })
+            .onErrorResume(e -> {
+                // Meta refusing the message outright is final; anything else is retried
+                int attemptLimit = e instanceof WhatsAppException whatsApp && whatsApp.isRejected() ? 0 : maxAttempts;
+                notification.markAttemptFailed(e.getMessage(), attemptLimit, Instant.now().plus(backoff(notification)));
+                if (notification.getStatus() == NotificationStatus.FAILED) {
+                    failed.increment();
+                    log.error("Giving up on notification {} to {} after {} attempts: {}",
+                        notification.getId(), notification.getRecipientWhatsAppId(), notification.getAttempts(), e.getMessage());
+                } else {
+                    retried.increment();
+                    log.warn("Notification {} failed, retrying at {}: {}",
+                        notification.getId(), notification.getNextAttemptAt(), e.getMessage());
+                }
+                return Mono.just(notification);
+            });
+    }
+
+    private Mono<String> deliver(OutboxNotification notification) {
+        if (notification.getButtons() == null) {
+            return notificationService.deliverMessage(notification.getRecipientWhatsAppId(), notification.getBody());
+        }
+        return Mono.fromCallable(() -> objectMapper.readValue(notification.getButtons(), BUTTONS))
+            .flatMap(buttons -> notificationService.deliverInteractiveButtons(
+                notification.getRecipientWhatsAppId(), notification.getBody(), buttons));
+    }
+
+    // Doubles from initial-backoff with each attempt already made, up to max-backoff
+    private Duration backoff(OutboxNotification notification) {
+        int doublings = Math.min(notification.getAttempts(), 20);
+        Duration backoff = initialBackoff.multipliedBy(1L << doublings);
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+}
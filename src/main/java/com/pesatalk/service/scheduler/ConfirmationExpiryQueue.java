@@ -0,0 +1,172 @@
+package com.pesatalk.service.scheduler;
+
+import com.pesatalk.model.Transaction;
+import com.pesatalk.model.enums.TransactionStatus;
+import com.pesatalk.repository.TransactionRepository;
+import com.pesatalk.service.outbox.NotificationOutbox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+
+// Expires pending confirmations when they fall due rather than on the next sweep. Each
+// one is a member of a Redis sorted set scored by its expiry time; every node polls the
+// due end of the set, and the node whose ZREM removes a member expires that transaction.
+// TransactionScheduler's sweep still catches any whose entry was never written or lost.
+@Component
+public class ConfirmationExpiryQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfirmationExpiryQueue.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final TransactionRepository transactionRepository;
+    private final NotificationOutbox notificationOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final byte[] key;
+    private final int batchSize;
+    private final Duration retryDelay;
+    private final Counter expired;
+    private final Timer lag;
+
+    public ConfirmationExpiryQueue(
+        RedisTemplate<String, Object> redisTemplate,
+        TransactionRepository transactionRepository,
+        NotificationOutbox notificationOutbox,
+        TransactionTemplate transactionTemplate,
+        MeterRegistry meterRegistry,
+        @Value("${transaction.expiry.queue-key:tx:confirmation-expiry}") String key,
+        @Value("${transaction.expiry.queue-batch-size:100}") int batchSize,
+        @Value("${transaction.expiry.retry-delay:10s}") Duration retryDelay
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.transactionRepository = transactionRepository;
+        this.notificationOutbox = notificationOutbox;
+        this.transactionTemplate = transactionTemplate;
+        this.key = key.getBytes(StandardCharsets.UTF_8);
+        this.batchSize = batchSize;
+        this.retryDelay = retryDelay;
+        this.expired = Counter.builder("transaction.confirmation.expired")
+            .tag("source", "queue")
+            .register(meterRegistry);
+        this.lag = Timer.builder("transaction.confirmation.expiry.lag")
+            .description("Time from a confirmation's expiry to the queue expiring it")
+            .register(meterRegistry);
+    }
+
+    static String expiredMessage(BigDecimal amount) {
+        return "Your transaction of KES " + amount +
+            " has expired. Please start a new transaction if you still wish to proceed.";
+    }
+
+    // Call in the transaction that creates the pending confirmation, so a rolled back
+    // transaction leaves nothing queued
+    public void scheduleAfterCommit(UUID transactionId, Instant expiresAt) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            schedule(transactionId, expiresAt);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                schedule(transactionId, expiresAt);
+            }
+        });
+    }
+
+    private void schedule(UUID transactionId, Instant expiresAt) {
+        try {
+            redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.zSetCommands()
+                .zAdd(key, expiresAt.toEpochMilli(), member(transactionId)));
+        } catch (Exception e) {
+            // Left to the sweep
+            log.warn("Failed to queue expiry of transaction {}: {}", transactionId, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${transaction.expiry.poll-interval-ms:1000}")
+    public void expireDue() {
+        Instant now = Instant.now();
+        Set<byte[]> due;
+        try {
+            due = redisTemplate.execute((RedisCallback<Set<byte[]>>) connection -> connection.zSetCommands()
+                .zRangeByScore(key, Range.closed(0d, (double) now.toEpochMilli()), Limit.limit().count(batchSize)));
+        } catch (Exception e) {
+            log.warn("Failed to read due confirmation expiries: {}", e.getMessage());
+            return;
+        }
+        if (due == null) {
+            return;
+        }
+
+        for (byte[] member : due) {
+            // Another node got here first
+            if (!claim(member)) {
+                continue;
+            }
+            UUID transactionId = UUID.fromString(new String(member, StandardCharsets.UTF_8));
+            try {
+                expire(transactionId, now);
+            } catch (Exception e) {
+                log.error("Error expiring transaction {}: {}", transactionId, e.getMessage());
+                schedule(transactionId, now.plus(retryDelay));
+            }
+        }
+    }
+
+    private boolean claim(byte[] member) {
+        Long removed = redisTemplate.execute((RedisCallback<Long>) connection -> connection.zSetCommands()
+            .zRem(key, member));
+        return removed != null && removed > 0;
+    }
+
+    void expire(UUID transactionId, Instant now) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Transaction transaction = transactionRepository.findByIdWithLock(transactionId).orElse(null);
+            if (transaction == null || transaction.getStatus() != TransactionStatus.PENDING_CONFIRMATION) {
+                // Confirmed, cancelled or already expired
+                return;
+            }
+            if (transaction.getConfirmationExpiresAt().isAfter(now)) {
+                // Polled early by a node whose clock runs ahead
+                schedule(transactionId, transaction.getConfirmationExpiresAt());
+                return;
+            }
+
+            transaction.transitionTo(TransactionStatus.EXPIRED);
+            transaction.setFailureReason("Confirmation timeout");
+            transactionRepository.save(transaction);
+
+            notificationOutbox.enqueueMessage(
+                transaction.getSender().getWhatsAppId(),
+                expiredMessage(transaction.getAmount()),
+                "tx:" + transactionId + ":EXPIRED"
+            );
+
+            expired.increment();
+            lag.record(Duration.between(transaction.getConfirmationExpiresAt(), now));
+            log.info("Expired transaction: {}", transactionId);
+        });
+    }
+
+    private static byte[] member(UUID transactionId) {
+        return transactionId.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -3,132 +3,151 @@ package com.pesatalk.service.scheduler;
 import com.pesatalk.model.Transaction;
 import com.pesatalk.model.enums.TransactionStatus;
 import com.pesatalk.repository.TransactionRepository;
-import com.pesatalk.service.NotificationService;
+import com.pesatalk.service.outbox.NotificationOutbox;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
 
+// Overdue transactions are moved in chunks of chunk-size, each a short transaction of
+// its own that locks the rows, transitions them (so Envers records the change) and
+// queues the notifications for the outbox relay, so a large backlog never holds locks
+// for the length of the whole run.
 @Component
 public class TransactionScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(TransactionScheduler.class);
 
+    // Sorts below every id, to start the keyset walk
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
     private final TransactionRepository transactionRepository;
-    private final NotificationService notificationService;
+    private final NotificationOutbox notificationOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration stkPushTimeout;
 
     public TransactionScheduler(
         TransactionRepository transactionRepository,
-        NotificationService notificationService
+        NotificationOutbox notificationOutbox,
+        TransactionTemplate transactionTemplate,
+        @Value("${transaction.expiry.chunk-size:500}") int chunkSize,
+        @Value("${transaction.expiry.stk-push-timeout:30m}") Duration stkPushTimeout
     ) {
         this.transactionRepository = transactionRepository;
-        this.notificationService = notificationService;
+        this.notificationOutbox = notificationOutbox;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.stkPushTimeout = stkPushTimeout;
     }
 
-    @Scheduled(fixedRate = 60000) // Every minute
-    @SchedulerLock(name = "expirePendingConfirmations", lockAtMostFor = "2m", lockAtLeastFor = "30s")
-    @Transactional
+    // Safety net behind ConfirmationExpiryQueue, for expiries it never had or lost
+    @Scheduled(fixedDelayString = "${transaction.expiry.sweep-interval-ms:600000}")
+    @SchedulerLock(name = "expirePendingConfirmations", lockAtMostFor = "5m", lockAtLeastFor = "30s")
     public void expirePendingConfirmations() {
         log.debug("Running expirePendingConfirmations job");
 
-        List<Transaction> expiredTransactions = transactionRepository
-            .findExpiredPendingConfirmations(
-                TransactionStatus.PENDING_CONFIRMATION,
-                Instant.now()
-            );
-
-        if (expiredTransactions.isEmpty()) {
-            return;
-        }
-
-        log.info("Found {} expired pending confirmations", expiredTransactions.size());
-
-        for (Transaction transaction : expiredTransactions) {
-            try {
-                transaction.transitionTo(TransactionStatus.EXPIRED);
-                transaction.setFailureReason("Confirmation timeout");
-                transactionRepository.save(transaction);
-
-                // Notify user
-                notificationService.sendMessage(
-                    transaction.getSender().getWhatsAppId(),
-                    "Your transaction of KES " + transaction.getAmount() +
-                    " has expired. Please start a new transaction if you still wish to proceed."
-                );
-
-                log.info("Expired transaction: {}", transaction.getId());
-            } catch (Exception e) {
-                log.error("Error expiring transaction {}: {}", transaction.getId(), e.getMessage());
-            }
+        Instant now = Instant.now();
+        int expired = inChunks(
+            afterId -> transactionRepository.findExpiredConfirmationsForUpdate(
+                now, afterId, PageRequest.of(0, chunkSize)),
+            TransactionStatus.EXPIRED,
+            "Confirmation timeout",
+            transaction -> new NotificationOutbox.QueuedMessage(
+                transaction.getSender().getWhatsAppId(),
+                ConfirmationExpiryQueue.expiredMessage(transaction.getAmount()),
+                "tx:" + transaction.getId() + ":EXPIRED"
+            )
+        );
+
+        if (expired > 0) {
+            log.info("Sweep expired {} pending confirmations", expired);
         }
     }
 
+    // Last resort behind STKPushReconciler, for pushes Daraja has not answered a query on
     @Scheduled(fixedRate = 300000) // Every 5 minutes
     @SchedulerLock(name = "checkStaleSTKPush", lockAtMostFor = "5m", lockAtLeastFor = "1m")
-    @Transactional
     public void checkStaleSTKPushTransactions() {
         log.debug("Running checkStaleSTKPush job");
 
-        // Transactions stuck in STK_PUSHED for more than 5 minutes
-        Instant cutoff = Instant.now().minus(5, ChronoUnit.MINUTES);
-
-        List<Transaction> staleTransactions = transactionRepository
-            .findStaleProcessingTransactions(TransactionStatus.STK_PUSHED, cutoff);
-
-        if (staleTransactions.isEmpty()) {
-            return;
+        // Mark as failed - we didn't receive a callback in time
+        Instant cutoff = Instant.now().minus(stkPushTimeout);
+        int failed = inChunks(
+            afterId -> transactionRepository.findStaleSTKPushesForUpdate(
+                cutoff, afterId, PageRequest.of(0, chunkSize)),
+            TransactionStatus.FAILED,
+            "STK Push timeout - no callback received",
+            transaction -> new NotificationOutbox.QueuedMessage(
+                transaction.getSender().getWhatsAppId(),
+                "Your transaction timed out. This could mean:\n" +
+                "1. You cancelled the MPesa prompt\n" +
+                "2. The request expired on your phone\n\n" +
+                "Please try again if you wish to proceed.",
+                "tx:" + transaction.getId() + ":FAILED"
+            )
+        );
+
+        if (failed > 0) {
+            log.info("Marked {} stale STK push transactions as failed", failed);
         }
+    }
 
-        log.info("Found {} stale STK push transactions", staleTransactions.size());
-
-        for (Transaction transaction : staleTransactions) {
+    // Runs chunks until one comes back short, committing each with its notifications.
+    // A chunk that fails is rolled back and left for the next run.
+    private int inChunks(
+        Function<UUID, List<Transaction>> chunk,
+        TransactionStatus target,
+        String reason,
+        Function<Transaction, NotificationOutbox.QueuedMessage> notification
+    ) {
+        UUID afterId = FIRST_ID;
+        int total = 0;
+        while (true) {
+            UUID from = afterId;
+            List<Transaction> moved;
             try {
-                // Mark as failed - we didn't receive callback
-                transaction.transitionTo(TransactionStatus.FAILED);
-                transaction.setFailureReason("STK Push timeout - no callback received");
-                transactionRepository.save(transaction);
-
-                notificationService.sendMessage(
-                    transaction.getSender().getWhatsAppId(),
-                    "Your transaction timed out. This could mean:\n" +
-                    "1. You cancelled the MPesa prompt\n" +
-                    "2. The request expired on your phone\n\n" +
-                    "Please try again if you wish to proceed."
-                );
-
-                log.info("Marked stale STK transaction as failed: {}", transaction.getId());
+                moved = transactionTemplate.execute(status -> {
+                    List<Transaction> rows = chunk.apply(from);
+                    rows.forEach(transaction -> {
+                        transaction.transitionTo(target);
+                        transaction.setFailureReason(reason);
+                    });
+                    transactionRepository.saveAll(rows);
+                    notificationOutbox.enqueueMessages(rows.stream().map(notification).toList());
+                    return rows;
+                });
             } catch (Exception e) {
-                log.error("Error processing stale transaction {}: {}", transaction.getId(), e.getMessage());
+                log.error("Error expiring transactions after {}: {}", from, e.getMessage(), e);
+                return total;
+            }
+
+            total += moved.size();
+            if (moved.size() < chunkSize) {
+                return total;
             }
+            afterId = lastId(moved);
         }
     }
 
-    @Scheduled(cron = "0 0 0 * * ?") // Daily at midnight
-    @SchedulerLock(name = "resetDailyLimits", lockAtMostFor = "10m", lockAtLeastFor = "5m")
-    @Transactional
-    public void resetDailyLimits() {
-        log.info("Running resetDailyLimits job");
-
-        // Reset daily transaction limits for users whose last transaction
-        // was before today
-        Instant startOfToday = Instant.now().truncatedTo(ChronoUnit.DAYS);
-
-        int updated = transactionRepository
-            .bulkUpdateExpiredTransactions(
-                List.of(), // Empty list - using different method
-                TransactionStatus.PENDING_CONFIRMATION,
-                TransactionStatus.EXPIRED,
-                Instant.now(),
-                "Daily limit reset"
-            );
-
-        log.info("Reset daily limits completed");
+    // UUID.compareTo compares signed halves where PostgreSQL compares unsigned bytes; the
+    // lowercase hex strings sort as PostgreSQL does, so this matches the query's id order
+    private static UUID lastId(List<Transaction> rows) {
+        return rows.stream()
+            .map(Transaction::getId)
+            .max(Comparator.comparing(UUID::toString))
+            .orElseThrow();
     }
 
     @Scheduled(cron = "0 0 2 * * ?") // Daily at 2 AM
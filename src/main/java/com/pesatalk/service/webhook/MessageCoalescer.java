@@ -0,0 +1,157 @@
+package com.pesatalk.service.webhook;
+
+import com.pesatalk.integration.whatsapp.dto.WhatsAppWebhookPayload;
+import com.pesatalk.service.MessageProcessingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Holds a sender's text messages for a short debounce window so bursts like "send",
+// "500", "to john" reach MessageProcessingService as one batch with one parse, one
+// user lookup and one reply. Each new text restarts the window; anything else from
+// the sender flushes the open burst first so lane order still matches arrival order.
+@Component
+public class MessageCoalescer implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageCoalescer.class);
+
+    private final MessageDispatcher messageDispatcher;
+    private final MessageProcessingService messageProcessingService;
+    private final long windowNanos;
+    private final int maxMessages;
+    private final ScheduledExecutorService timer;
+
+    private final Map<String, Burst> open = new ConcurrentHashMap<>();
+
+    public MessageCoalescer(
+        MessageDispatcher messageDispatcher,
+        MessageProcessingService messageProcessingService,
+        @Value("${webhook.dispatch.coalesce-window:0ms}") Duration window,
+        @Value("${webhook.dispatch.coalesce-max-messages:5}") int maxMessages
+    ) {
+        this.messageDispatcher = messageDispatcher;
+        this.messageProcessingService = messageProcessingService;
+        this.windowNanos = window.toNanos();
+        this.maxMessages = maxMessages;
+        this.timer = windowNanos > 0
+            ? Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("message-coalescer-"))
+            : null;
+    }
+
+    public CompletableFuture<Void> dispatch(WhatsAppWebhookPayload.Message message, String senderName) {
+        String senderId = message.from();
+        if (timer == null || !"text".equalsIgnoreCase(message.type()) || message.text() == null) {
+            flush(senderId);
+            return messageDispatcher.dispatch(senderId, () -> process(List.of(message), senderName));
+        }
+
+        Burst[] full = new Burst[1];
+        Burst burst = open.compute(senderId, (id, current) -> {
+            Burst target = current != null ? current : new Burst(senderName);
+            target.messages.add(message);
+            if (target.messages.size() >= maxMessages) {
+                full[0] = target;
+                return null;
+            }
+            target.reschedule(timer.schedule(() -> expire(id, target), windowNanos, TimeUnit.NANOSECONDS));
+            return target;
+        });
+
+        Burst target = full[0] != null ? full[0] : burst;
+        if (full[0] != null) {
+            full[0].cancelTimer();
+            send(senderId, full[0]);
+        }
+        return target.completion;
+    }
+
+    // Dispatches any burst still waiting for this sender
+    public void flush(String senderId) {
+        Burst burst = open.remove(senderId);
+        if (burst != null) {
+            burst.cancelTimer();
+            send(senderId, burst);
+        }
+    }
+
+    private void expire(String senderId, Burst burst) {
+        // Only the latest timer of a burst that is still open may send it
+        if (open.remove(senderId, burst)) {
+            send(senderId, burst);
+        }
+    }
+
+    private void send(String senderId, Burst burst) {
+        List<WhatsAppWebhookPayload.Message> messages = List.copyOf(burst.messages);
+        if (messages.size() > 1) {
+            log.debug("Coalesced {} messages from one sender", messages.size());
+        }
+        messageDispatcher.dispatch(senderId, () -> process(messages, burst.senderName))
+            .whenComplete((ignored, error) -> {
+                if (error != null) {
+                    burst.completion.completeExceptionally(error);
+                } else {
+                    burst.completion.complete(null);
+                }
+            });
+    }
+
+    private void process(List<WhatsAppWebhookPayload.Message> messages, String senderName) {
+        WhatsAppWebhookPayload.Message last = messages.getLast();
+        log.info("Processing message id={}, type={}", last.id(), last.type());
+        if (messages.size() == 1) {
+            messageProcessingService.processIncomingMessage(last, senderName);
+        } else {
+            messageProcessingService.processIncomingMessages(messages, senderName);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (timer == null) {
+            return;
+        }
+        timer.shutdownNow();
+        // Hand open bursts to the lanes before they are drained on shutdown
+        for (String senderId : List.copyOf(open.keySet())) {
+            flush(senderId);
+        }
+    }
+
+    private static final class Burst {
+
+        private final String senderName;
+        private final List<WhatsAppWebhookPayload.Message> messages = new ArrayList<>();
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private ScheduledFuture<?> pendingTimer;
+
+        private Burst(String senderName) {
+            this.senderName = senderName;
+        }
+
+        void reschedule(ScheduledFuture<?> next) {
+            cancelTimer();
+            pendingTimer = next;
+        }
+
+        void cancelTimer() {
+            if (pendingTimer != null) {
+                pendingTimer.cancel(false);
+            }
+        }
+    }
+}
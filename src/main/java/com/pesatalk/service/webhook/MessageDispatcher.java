@@ -0,0 +1,122 @@
+package com.pesatalk.service.webhook;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class MessageDispatcher implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageDispatcher.class);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    // Each lane is a single thread, so messages from one sender always run in
+    // arrival order while different senders spread across all lanes. A lane queues at
+    // most lane-queue-capacity messages and refuses more, rather than growing unbounded.
+    private final ThreadPoolExecutor[] lanes;
+    private final int laneQueueCapacity;
+
+    // Message handling holds a JDBC connection for most of its run; capping it at the
+    // Hikari pool size makes extra lanes queue here instead of timing out in the pool
+    private final Semaphore connectionPermits;
+
+    public MessageDispatcher(
+        @Value("${webhook.dispatch.lanes:0}") int laneCount,
+        @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+        @Value("${threads.db-permits:${spring.datasource.hikari.maximum-pool-size:10}}") int dbPermits,
+        @Value("${webhook.dispatch.lane-queue-capacity:100}") int laneQueueCapacity
+    ) {
+        int count = laneCount > 0
+            ? laneCount
+            : Runtime.getRuntime().availableProcessors() * (virtualThreads ? 16 : 2);
+        this.lanes = new ThreadPoolExecutor[count];
+        this.laneQueueCapacity = laneQueueCapacity;
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(laneQueueCapacity), laneThreadFactory(i, virtualThreads),
+                new ThreadPoolExecutor.AbortPolicy());
+        }
+        this.connectionPermits = new Semaphore(dbPermits, true);
+        log.info("Message dispatcher started with {} {} lanes and {} connection permits",
+            count, virtualThreads ? "virtual" : "platform", dbPermits);
+    }
+
+    // Fails the returned future with RejectedExecutionException when the sender's lane is full
+    public CompletableFuture<Void> dispatch(String senderId, Runnable task) {
+        try {
+            return CompletableFuture.runAsync(() -> runGuarded(task), laneFor(senderId));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Messages waiting in all lanes
+    public int backlog() {
+        int backlog = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            backlog += lane.getQueue().size();
+        }
+        return backlog;
+    }
+
+    // Fill of the fullest lane, since one hot sender's lane refuses before the others do
+    public double utilisation() {
+        int fullest = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            fullest = Math.max(fullest, lane.getQueue().size());
+        }
+        return (double) fullest / laneQueueCapacity;
+    }
+
+    private void runGuarded(Runnable task) {
+        try {
+            connectionPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a connection permit", e);
+        }
+        try {
+            task.run();
+        } finally {
+            connectionPermits.release();
+        }
+    }
+
+    private ThreadFactory laneThreadFactory(int lane, boolean virtualThreads) {
+        if (virtualThreads) {
+            return Thread.ofVirtual().name("message-lane-" + lane).factory();
+        }
+        return new CustomizableThreadFactory("message-lane-" + lane + "-");
+    }
+
+    private ThreadPoolExecutor laneFor(String senderId) {
+        int hash = senderId != null ? senderId.hashCode() : 0;
+        // Spread the hash so sequential phone numbers do not cluster on a few lanes
+        hash ^= (hash >>> 16);
+        return lanes[Math.floorMod(hash, lanes.length)];
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            if (!lane.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Message lane did not drain within {}s", SHUTDOWN_TIMEOUT_SECONDS);
+                lane.shutdownNow();
+            }
+        }
+    }
+}
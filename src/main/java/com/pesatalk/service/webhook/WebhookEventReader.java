@@ -0,0 +1,196 @@
+package com.pesatalk.service.webhook;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pesatalk.integration.whatsapp.dto.WhatsAppWebhookPayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Walks a webhook body with a streaming JsonParser and binds one Message or Status at a
+// time, so a batched payload is never materialised as a full WhatsAppWebhookPayload tree
+@Component
+public class WebhookEventReader {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookEventReader.class);
+    private static final String WHATSAPP_OBJECT = "whatsapp_business_account";
+
+    private final ObjectMapper objectMapper;
+
+    public WebhookEventReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public interface EventHandler {
+
+        void onMessage(WhatsAppWebhookPayload.Message message, String senderName);
+
+        void onStatus(WhatsAppWebhookPayload.Status status);
+    }
+
+    public void read(byte[] payload, EventHandler handler) throws IOException {
+        Emitter emitter = new Emitter(handler);
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "object" -> emitter.accept(parser.getValueAsString());
+                    case "entry" -> readEntries(parser, emitter);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        emitter.finish();
+    }
+
+    private void readEntries(JsonParser parser, Emitter emitter) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("changes".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                    readChanges(parser, emitter);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private void readChanges(JsonParser parser, Emitter emitter) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("value".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                    readValue(parser, emitter);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private void readValue(JsonParser parser, Emitter emitter) throws IOException {
+        String senderName = null;
+        boolean contactsSeen = false;
+        // Meta sends contacts ahead of messages; only buffer if a payload does not
+        List<WhatsAppWebhookPayload.Message> awaitingContacts = new ArrayList<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+
+            switch (field) {
+                case "contacts" -> {
+                    senderName = readSenderName(parser);
+                    contactsSeen = true;
+                }
+                case "messages" -> {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        var message = objectMapper.readValue(parser, WhatsAppWebhookPayload.Message.class);
+                        if (contactsSeen) {
+                            emitter.message(message, senderName);
+                        } else {
+                            awaitingContacts.add(message);
+                        }
+                    }
+                }
+                case "statuses" -> {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        emitter.status(objectMapper.readValue(parser, WhatsAppWebhookPayload.Status.class));
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        for (var message : awaitingContacts) {
+            emitter.message(message, senderName);
+        }
+    }
+
+    private String readSenderName(JsonParser parser) throws IOException {
+        String senderName = null;
+        boolean first = true;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            var contact = objectMapper.readValue(parser, WhatsAppWebhookPayload.Contact.class);
+            if (first && contact.profile() != null) {
+                senderName = contact.profile().name();
+            }
+            first = false;
+        }
+        return senderName;
+    }
+
+    private void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+        }
+    }
+
+    // Holds events back until the "object" field confirms a WhatsApp payload. Meta sends
+    // it first, so in practice nothing is buffered.
+    private static final class Emitter {
+
+        private final EventHandler handler;
+        private final List<Runnable> pending = new ArrayList<>();
+        private Boolean accepted;
+
+        private Emitter(EventHandler handler) {
+            this.handler = handler;
+        }
+
+        void accept(String object) {
+            accepted = WHATSAPP_OBJECT.equals(object);
+            if (accepted) {
+                pending.forEach(Runnable::run);
+            } else {
+                log.debug("Ignoring non-WhatsApp payload: {}", object);
+            }
+            pending.clear();
+        }
+
+        void message(WhatsAppWebhookPayload.Message message, String senderName) {
+            emit(() -> handler.onMessage(message, senderName));
+        }
+
+        void status(WhatsAppWebhookPayload.Status status) {
+            emit(() -> handler.onStatus(status));
+        }
+
+        void finish() {
+            if (accepted == null) {
+                log.debug("Ignoring non-WhatsApp payload: null");
+                pending.clear();
+            }
+        }
+
+        private void emit(Runnable event) {
+            if (accepted == null) {
+                pending.add(event);
+            } else if (accepted) {
+                event.run();
+            }
+        }
+    }
+}
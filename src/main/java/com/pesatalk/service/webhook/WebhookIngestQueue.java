@@ -0,0 +1,211 @@
+package com.pesatalk.service.webhook;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.RedisStreamCommands.XPendingOptions;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class WebhookIngestQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookIngestQueue.class);
+    private static final byte[] PAYLOAD_FIELD = "p".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] REASON_FIELD = "reason".getBytes(StandardCharsets.UTF_8);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final boolean enabled;
+    private final byte[] streamKey;
+    private final byte[] deadLetterKey;
+    private final String group;
+    private final long maxLength;
+
+    public WebhookIngestQueue(
+        RedisTemplate<String, Object> redisTemplate,
+        @Value("${webhook.ingest.enabled:true}") boolean enabled,
+        @Value("${webhook.ingest.stream-key:webhook:ingest}") String streamKey,
+        @Value("${webhook.ingest.group:webhook-processors}") String group,
+        @Value("${webhook.ingest.max-length:100000}") long maxLength
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.streamKey = streamKey.getBytes(StandardCharsets.UTF_8);
+        this.deadLetterKey = (streamKey + ":dead").getBytes(StandardCharsets.UTF_8);
+        this.group = group;
+        this.maxLength = maxLength;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String append(byte[] payload) {
+        RecordId id = execute(connection -> connection.streamCommands().xAdd(
+            StreamRecords.newRecord().in(streamKey).ofMap(Map.of(PAYLOAD_FIELD, payload)),
+            XAddOptions.maxlen(maxLength).approximateTrimming(true)
+        ));
+        return id != null ? id.getValue() : null;
+    }
+
+    public void createGroupIfMissing() {
+        try {
+            execute(connection -> connection.streamCommands()
+                .xGroupCreate(streamKey, group, ReadOffset.from("0"), true));
+            log.info("Created webhook ingest consumer group: {}", group);
+        } catch (Exception e) {
+            // BUSYGROUP - the group already exists
+            log.debug("Webhook ingest consumer group already present: {}", e.getMessage());
+        }
+    }
+
+    // xReadGroup only takes the stream offsets as generic varargs
+    @SuppressWarnings("unchecked")
+    public List<IngestRecord> readNew(String consumer, int count, Duration block) {
+        List<ByteRecord> records = execute(connection -> connection.streamCommands().xReadGroup(
+            Consumer.from(group, consumer),
+            StreamReadOptions.empty().count(count).block(block),
+            StreamOffset.create(streamKey, ReadOffset.lastConsumed())
+        ));
+        if (records == null || records.isEmpty()) {
+            return List.of();
+        }
+        return records.stream()
+            .map(record -> toIngestRecord(record, 1L))
+            .toList();
+    }
+
+    // XPENDING cannot filter by idle time in this client and XAUTOCLAIM is not exposed, so
+    // the pending list is paged through in ID order until count idle entries are found;
+    // entries still being worked on never hide idle ones queued behind them
+    public List<IngestRecord> claimIdle(String consumer, Duration minIdle, int count) {
+        return execute(connection -> {
+            List<RecordId> idle = new ArrayList<>();
+            Map<String, Long> deliveries = new HashMap<>();
+            String cursor = null;
+
+            while (idle.size() < count) {
+                // Inclusive from the last ID seen, which is skipped, for Redis before 6.2
+                Range<String> range = cursor == null
+                    ? Range.unbounded()
+                    : Range.rightUnbounded(Range.Bound.inclusive(cursor));
+                var pending = connection.streamCommands().xPending(
+                    streamKey, group, XPendingOptions.range(range, (long) count + 1)
+                );
+                if (pending == null || pending.isEmpty()) {
+                    break;
+                }
+
+                for (PendingMessage message : pending) {
+                    if (message.getIdAsString().equals(cursor)) {
+                        continue;
+                    }
+                    if (idle.size() < count
+                        && message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0) {
+                        idle.add(message.getId());
+                        deliveries.put(message.getIdAsString(), message.getTotalDeliveryCount());
+                    }
+                }
+                if (pending.size() <= count) {
+                    // A short page is the end of the pending list
+                    break;
+                }
+                cursor = pending.get(pending.size() - 1).getIdAsString();
+            }
+            if (idle.isEmpty()) {
+                return List.<IngestRecord>of();
+            }
+
+            List<ByteRecord> claimed = connection.streamCommands().xClaim(
+                streamKey, group, consumer,
+                XClaimOptions.minIdle(minIdle).ids(idle)
+            );
+            return claimed.stream()
+                .map(record -> toIngestRecord(record,
+                    deliveries.getOrDefault(record.getId().getValue(), 1L) + 1))
+                .toList();
+        });
+    }
+
+    public void ack(String id) {
+        execute(connection -> connection.streamCommands().xAck(streamKey, group, RecordId.of(id)));
+    }
+
+    public void deadLetter(IngestRecord record, String reason) {
+        execute(connection -> {
+            connection.streamCommands().xAdd(
+                StreamRecords.newRecord().in(deadLetterKey).ofMap(Map.of(
+                    PAYLOAD_FIELD, record.payload() != null ? record.payload() : new byte[0],
+                    REASON_FIELD, reason.getBytes(StandardCharsets.UTF_8)
+                )),
+                XAddOptions.maxlen(maxLength).approximateTrimming(true)
+            );
+            return connection.streamCommands().xAck(streamKey, group, RecordId.of(record.id()));
+        });
+        log.warn("Moved webhook payload {} to dead letter stream: {}", record.id(), reason);
+    }
+
+    public long pendingCount() {
+        Long count = execute(connection -> {
+            var summary = connection.streamCommands().xPending(streamKey, group);
+            return summary != null ? summary.getTotalPendingMessages() : 0L;
+        });
+        return count != null ? count : 0L;
+    }
+
+    // Entries not yet read by the group plus those read but unacknowledged. Redis before
+    // 7.0 does not report the group lag, so only the pending entries are counted there.
+    public long backlog() {
+        Long count = execute(connection -> {
+            var groups = connection.streamCommands().xInfoGroups(streamKey);
+            if (groups == null) {
+                return 0L;
+            }
+            for (var info : groups) {
+                if (group.equals(info.groupName())) {
+                    long pending = info.pendingCount() != null ? info.pendingCount() : 0L;
+                    return info.getRaw().get("lag") instanceof Long lag ? pending + lag : pending;
+                }
+            }
+            return 0L;
+        });
+        return count != null ? count : 0L;
+    }
+
+    private IngestRecord toIngestRecord(ByteRecord record, long deliveryCount) {
+        byte[] payload = null;
+        for (Map.Entry<byte[], byte[]> field : record.getValue().entrySet()) {
+            if (Arrays.equals(PAYLOAD_FIELD, field.getKey())) {
+                payload = field.getValue();
+                break;
+            }
+        }
+        return new IngestRecord(record.getId().getValue(), payload, deliveryCount);
+    }
+
+    private <T> T execute(RedisCallback<T> callback) {
+        return redisTemplate.execute(callback);
+    }
+
+    public record IngestRecord(String id, byte[] payload, long deliveryCount) {}
+}
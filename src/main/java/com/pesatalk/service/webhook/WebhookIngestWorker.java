@@ -0,0 +1,216 @@
+package com.pesatalk.service.webhook;
+
+import com.pesatalk.service.webhook.WebhookIngestQueue.IngestRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class WebhookIngestWorker implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookIngestWorker.class);
+    private static final Duration ERROR_BACKOFF = Duration.ofSeconds(1);
+
+    private final WebhookIngestQueue ingestQueue;
+    private final WebhookPayloadProcessor payloadProcessor;
+    private final Executor webhookExecutor;
+    private final String consumerName;
+    private final int batchSize;
+    private final Duration blockTimeout;
+    private final Duration claimIdle;
+    private final int maxDeliveries;
+
+    // Bounds the number of journaled payloads being processed at once so the
+    // executor queue never overflows; unread entries simply wait in the stream
+    private final Semaphore inFlight;
+
+    private volatile boolean running;
+    private Thread pollerThread;
+
+    public WebhookIngestWorker(
+        WebhookIngestQueue ingestQueue,
+        WebhookPayloadProcessor payloadProcessor,
+        @Qualifier("webhookExecutor") Executor webhookExecutor,
+        @Value("${webhook.ingest.consumer-name:${HOSTNAME:}}") String consumerName,
+        @Value("${webhook.ingest.max-in-flight:100}") int maxInFlight,
+        @Value("${webhook.ingest.batch-size:20}") int batchSize,
+        @Value("${webhook.ingest.block-timeout:2s}") Duration blockTimeout,
+        @Value("${webhook.ingest.claim-idle:60s}") Duration claimIdle,
+        @Value("${webhook.ingest.max-deliveries:5}") int maxDeliveries
+    ) {
+        this.ingestQueue = ingestQueue;
+        this.payloadProcessor = payloadProcessor;
+        this.webhookExecutor = webhookExecutor;
+        this.consumerName = consumerName == null || consumerName.isBlank()
+            ? "consumer-" + UUID.randomUUID()
+            : consumerName;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.batchSize = batchSize;
+        this.blockTimeout = blockTimeout;
+        this.claimIdle = claimIdle;
+        this.maxDeliveries = maxDeliveries;
+    }
+
+    @Override
+    public void start() {
+        // Runs even when payloads are processed in memory, to retry those that failed there
+        // and any spilled overflow
+        if (!ingestQueue.isEnabled()) {
+            log.info("Webhook ingest journal disabled, consuming only failed and spilled payloads");
+        }
+
+        ingestQueue.createGroupIfMissing();
+        running = true;
+        pollerThread = new Thread(this::pollLoop, "webhook-ingest-poller");
+        pollerThread.setDaemon(true);
+        pollerThread.start();
+        log.info("Started webhook ingest worker as consumer {}", consumerName);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (pollerThread != null) {
+            pollerThread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void pollLoop() {
+        long nextClaimAt = 0;
+
+        while (running) {
+            try {
+                // Replay entries left unacknowledged by a crashed or stalled consumer
+                if (System.currentTimeMillis() >= nextClaimAt) {
+                    dispatch(ingestQueue.claimIdle(consumerName, claimIdle, batchSize));
+                    nextClaimAt = System.currentTimeMillis() + claimIdle.toMillis();
+                }
+
+                int permits = acquireCapacity();
+                if (permits == 0) {
+                    continue;
+                }
+
+                List<IngestRecord> records;
+                try {
+                    records = ingestQueue.readNew(consumerName, permits, blockTimeout);
+                } finally {
+                    // Hand back capacity we reserved but did not use
+                    inFlight.release(permits);
+                }
+                dispatch(records);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.error("Webhook ingest poll failed: {}", e.getMessage(), e);
+                sleepQuietly(ERROR_BACKOFF);
+            }
+        }
+    }
+
+    private int acquireCapacity() throws InterruptedException {
+        if (!inFlight.tryAcquire(blockTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            return 0;
+        }
+        int permits = 1;
+        while (permits < batchSize && inFlight.tryAcquire()) {
+            permits++;
+        }
+        return permits;
+    }
+
+    private void dispatch(List<IngestRecord> records) throws InterruptedException {
+        for (IngestRecord record : records) {
+            if (record.deliveryCount() > maxDeliveries) {
+                deadLetterQuietly(record, "Exceeded " + maxDeliveries + " delivery attempts");
+                payloadProcessor.abandon(record.payload());
+                continue;
+            }
+
+            inFlight.acquire();
+            try {
+                webhookExecutor.execute(() -> process(record));
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+    }
+
+    private void process(IngestRecord record) {
+        CompletableFuture<Void> completion;
+        try {
+            completion = payloadProcessor.process(record.payload());
+        } catch (IOException e) {
+            log.error("Failed to parse journaled webhook payload {}", record.id(), e);
+            deadLetterQuietly(record, "Unparseable payload");
+            inFlight.release();
+            return;
+        } catch (Exception e) {
+            // Left pending (e.g. Redis unavailable for claims) so it is reclaimed later
+            log.warn("Failed to process webhook payload {}, will retry: {}", record.id(), e.getMessage());
+            inFlight.release();
+            return;
+        }
+
+        // Ack only once every sender lane has finished with this payload's messages. A
+        // failed payload is left pending and reclaimed after claim-idle, until its last
+        // allowed delivery fails and it is dead-lettered instead, which is when its senders
+        // are told their request failed.
+        completion.whenComplete((ignored, error) -> {
+            try {
+                if (error == null) {
+                    ingestQueue.ack(record.id());
+                } else if (record.deliveryCount() >= maxDeliveries) {
+                    deadLetterQuietly(record, "Failed on delivery " + record.deliveryCount() + ": " + error.getMessage());
+                    payloadProcessor.abandon(record.payload());
+                } else {
+                    log.warn("Webhook payload {} failed on delivery {}, will retry: {}",
+                        record.id(), record.deliveryCount(), error.getMessage());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to ack webhook payload {}, it will be reclaimed: {}",
+                    record.id(), e.getMessage());
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void deadLetterQuietly(IngestRecord record, String reason) {
+        try {
+            ingestQueue.deadLetter(record, reason);
+        } catch (Exception e) {
+            log.warn("Failed to dead-letter webhook payload {}: {}", record.id(), e.getMessage());
+        }
+    }
+
+    private void sleepQuietly(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
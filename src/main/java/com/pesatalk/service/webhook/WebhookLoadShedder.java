@@ -0,0 +1,221 @@
+package com.pesatalk.service.webhook;
+
+import com.pesatalk.config.BoundedVirtualThreadExecutor;
+import com.pesatalk.exception.WebhookOverloadException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Decides at the webhook edge whether a payload can be taken on now. Overload is judged
+// from in-flight work, executor and sender-lane queue fill, queueing delay, journal
+// backlog and the state of downstream circuit breakers; shed payloads are either refused with Retry-After so
+// Meta redelivers later, or spilled to the ingest stream when processing in memory.
+@Component
+public class WebhookLoadShedder {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookLoadShedder.class);
+    private static final Duration STALE_DELAY_SAMPLE = Duration.ofSeconds(10);
+
+    public enum Mode { REJECT, SPILL }
+
+    private final Executor webhookExecutor;
+    private final MessageDispatcher messageDispatcher;
+    private final WebhookIngestQueue ingestQueue;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Mode mode;
+    private final int rejectStatus;
+    private final long retryAfterSeconds;
+    private final int maxInFlight;
+    private final double maxQueueUtilisation;
+    private final long maxQueueDelayNanos;
+    private final long maxBacklog;
+    private final List<String> circuitBreakers;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Ewma queueDelay = new Ewma(0.2, STALE_DELAY_SAMPLE.toNanos());
+    private volatile long backlog;
+
+    public WebhookLoadShedder(
+        @Qualifier("webhookExecutor") Executor webhookExecutor,
+        MessageDispatcher messageDispatcher,
+        WebhookIngestQueue ingestQueue,
+        CircuitBreakerRegistry circuitBreakerRegistry,
+        MeterRegistry meterRegistry,
+        @Value("${webhook.admission.mode:reject}") String mode,
+        @Value("${webhook.admission.reject-status:503}") int rejectStatus,
+        @Value("${webhook.admission.retry-after:30s}") Duration retryAfter,
+        @Value("${webhook.admission.max-in-flight:200}") int maxInFlight,
+        @Value("${webhook.admission.max-queue-utilisation:0.8}") double maxQueueUtilisation,
+        @Value("${webhook.admission.max-queue-delay:2s}") Duration maxQueueDelay,
+        @Value("${webhook.admission.max-backlog:5000}") long maxBacklog,
+        @Value("${webhook.admission.circuit-breakers:whatsapp}") List<String> circuitBreakers
+    ) {
+        this.webhookExecutor = webhookExecutor;
+        this.messageDispatcher = messageDispatcher;
+        this.ingestQueue = ingestQueue;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.meterRegistry = meterRegistry;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase());
+        this.rejectStatus = rejectStatus;
+        this.retryAfterSeconds = retryAfter.toSeconds();
+        this.maxInFlight = maxInFlight;
+        this.maxQueueUtilisation = maxQueueUtilisation;
+        this.maxQueueDelayNanos = maxQueueDelay.toNanos();
+        this.maxBacklog = maxBacklog;
+        this.circuitBreakers = circuitBreakers;
+
+        Gauge.builder("webhook.admission.in_flight", inFlight, AtomicInteger::get)
+            .description("Webhook payloads accepted for in-memory processing and not yet finished")
+            .register(meterRegistry);
+        Gauge.builder("webhook.admission.queue_delay", this, c -> c.queueDelay.value(System.nanoTime()) / 1_000_000)
+            .description("Smoothed time payloads wait for a webhook executor thread, in milliseconds")
+            .register(meterRegistry);
+        Gauge.builder("webhook.dispatch.backlog", messageDispatcher, MessageDispatcher::backlog)
+            .description("Messages queued in sender lanes and not yet started")
+            .register(meterRegistry);
+        Gauge.builder("webhook.ingest.backlog", this, c -> c.backlog)
+            .description("Journaled webhook payloads not yet acknowledged")
+            .register(meterRegistry);
+    }
+
+    // Returns why the webhook should shed load right now, or null to admit
+    public String overloadReason() {
+        for (String name : circuitBreakers) {
+            CircuitBreaker.State state = circuitBreakerRegistry.find(name)
+                .map(CircuitBreaker::getState)
+                .orElse(CircuitBreaker.State.CLOSED);
+            if (state == CircuitBreaker.State.OPEN || state == CircuitBreaker.State.FORCED_OPEN) {
+                return "circuit_open";
+            }
+        }
+        if (inFlight.get() >= maxInFlight || queueUtilisation() >= maxQueueUtilisation) {
+            return "saturated";
+        }
+        if (messageDispatcher.utilisation() >= maxQueueUtilisation) {
+            return "lane_backlog";
+        }
+        if (queueDelay.value(System.nanoTime()) > maxQueueDelayNanos) {
+            return "queue_delay";
+        }
+        if (backlog >= maxBacklog) {
+            return "backlog";
+        }
+        return null;
+    }
+
+    // Wraps an in-memory task so it counts towards in-flight work and queueing delay. The
+    // payload stays in flight until the future the task returns completes, which is when
+    // the sender lanes have finished its messages, not when they were handed over.
+    public Runnable track(Supplier<CompletableFuture<?>> task) {
+        long submittedAt = System.nanoTime();
+        inFlight.incrementAndGet();
+        return () -> {
+            long startedAt = System.nanoTime();
+            queueDelay.record(startedAt - submittedAt, startedAt);
+            CompletableFuture<?> processing;
+            try {
+                processing = task.get();
+            } catch (RuntimeException e) {
+                inFlight.decrementAndGet();
+                throw e;
+            }
+            processing.whenComplete((ignored, error) -> inFlight.decrementAndGet());
+        };
+    }
+
+    // Undoes track() for a task the executor refused
+    public void untrack() {
+        inFlight.decrementAndGet();
+    }
+
+    // Spilling only helps when payloads would otherwise be processed in memory;
+    // with the journal enabled they already go to the stream
+    public boolean spillsToJournal() {
+        return mode == Mode.SPILL && !ingestQueue.isEnabled();
+    }
+
+    public void admitted() {
+        record("admitted", "none");
+    }
+
+    public void spilled(String reason) {
+        record("spilled", reason);
+    }
+
+    public WebhookOverloadException reject(String reason) {
+        record("rejected", reason);
+        return WebhookOverloadException.shed(reason, rejectStatus, retryAfterSeconds);
+    }
+
+    @Scheduled(fixedDelayString = "${webhook.admission.sample-interval-ms:1000}")
+    public void sampleBacklog() {
+        if (!ingestQueue.isEnabled() && !spillsToJournal()) {
+            return;
+        }
+        try {
+            backlog = ingestQueue.backlog();
+        } catch (Exception e) {
+            // Keep the last sample; a Redis outage is caught when the journal append fails
+            log.debug("Failed to sample webhook ingest backlog: {}", e.getMessage());
+        }
+    }
+
+    private double queueUtilisation() {
+        if (webhookExecutor instanceof ThreadPoolTaskExecutor pool && pool.getQueueCapacity() > 0) {
+            return (double) pool.getQueueSize() / pool.getQueueCapacity();
+        }
+        if (webhookExecutor instanceof BoundedVirtualThreadExecutor bounded) {
+            return bounded.utilisation();
+        }
+        return 0;
+    }
+
+    private void record(String decision, String reason) {
+        meterRegistry.counter("webhook.admission", "decision", decision, "reason", reason).increment();
+    }
+
+    // Exponentially weighted moving average that reads as zero once samples stop arriving,
+    // so shedding on delay cannot latch on when nothing is being admitted to measure
+    private static final class Ewma {
+
+        private final double alpha;
+        private final long staleAfterNanos;
+        private double value;
+        private long updatedAt;
+        private boolean initialised;
+
+        private Ewma(double alpha, long staleAfterNanos) {
+            this.alpha = alpha;
+            this.staleAfterNanos = staleAfterNanos;
+        }
+
+        synchronized void record(long sample, long now) {
+            value = initialised ? value + alpha * (sample - value) : sample;
+            initialised = true;
+            updatedAt = now;
+        }
+
+        synchronized double value(long now) {
+            if (!initialised || now - updatedAt > staleAfterNanos) {
+                return 0;
+            }
+            return value;
+        }
+    }
+}
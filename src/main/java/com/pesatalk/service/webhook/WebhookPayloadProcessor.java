@@ -0,0 +1,160 @@
+package com.pesatalk.service.webhook;
+
+import com.pesatalk.integration.whatsapp.dto.WhatsAppWebhookPayload;
+import com.pesatalk.service.MessageDeduplicationService;
+import com.pesatalk.service.MessageStatusService;
+import com.pesatalk.service.NotificationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+@Service
+public class WebhookPayloadProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookPayloadProcessor.class);
+
+    private final MessageCoalescer messageCoalescer;
+    private final WebhookEventReader eventReader;
+    private final MessageDeduplicationService deduplicationService;
+    private final MessageStatusService messageStatusService;
+    private final NotificationService notificationService;
+    private final int claimBatchSize;
+
+    public WebhookPayloadProcessor(
+        MessageCoalescer messageCoalescer,
+        WebhookEventReader eventReader,
+        MessageDeduplicationService deduplicationService,
+        MessageStatusService messageStatusService,
+        NotificationService notificationService,
+        @Value("${webhook.idempotency.claim-batch-size:50}") int claimBatchSize
+    ) {
+        this.messageCoalescer = messageCoalescer;
+        this.eventReader = eventReader;
+        this.deduplicationService = deduplicationService;
+        this.messageStatusService = messageStatusService;
+        this.notificationService = notificationService;
+        this.claimBatchSize = claimBatchSize;
+    }
+
+    // Messages are claimed in batches of up to claim-batch-size as they are read and each
+    // claimed one is handed to its sender lane; the returned future completes once every
+    // lane has finished with this payload's messages, exceptionally if any of them failed.
+    // Malformed JSON is thrown, but messages read before the error are still processed.
+    public CompletableFuture<Void> process(byte[] payload) throws IOException {
+        List<CompletableFuture<Void>> dispatched = new ArrayList<>();
+        List<PendingMessage> batch = new ArrayList<>();
+
+        try {
+            eventReader.read(payload, new WebhookEventReader.EventHandler() {
+                @Override
+                public void onMessage(WhatsAppWebhookPayload.Message message, String senderName) {
+                    batch.add(new PendingMessage(message, senderName));
+                    if (batch.size() >= claimBatchSize) {
+                        claimAndDispatch(batch, dispatched);
+                    }
+                }
+
+                @Override
+                public void onStatus(WhatsAppWebhookPayload.Status status) {
+                    processStatus(status);
+                }
+            });
+        } catch (IOException e) {
+            claimAndDispatch(batch, dispatched);
+            throw e;
+        }
+        claimAndDispatch(batch, dispatched);
+
+        return CompletableFuture.allOf(dispatched.toArray(CompletableFuture[]::new));
+    }
+
+    // Gives up on a payload that will not be retried. Its messages that never completed
+    // had their claims released, so claiming them again finds exactly those; they are
+    // marked processed and each of their senders is told once that the request failed.
+    public void abandon(byte[] payload) {
+        List<WhatsAppWebhookPayload.Message> messages = new ArrayList<>();
+        try {
+            eventReader.read(payload, new WebhookEventReader.EventHandler() {
+                @Override
+                public void onMessage(WhatsAppWebhookPayload.Message message, String senderName) {
+                    messages.add(message);
+                }
+
+                @Override
+                public void onStatus(WhatsAppWebhookPayload.Status status) {
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Abandoning unparseable webhook payload after {} messages: {}", messages.size(), e.getMessage());
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        try {
+            Set<String> unprocessed = deduplicationService.claim(
+                messages.stream().map(WhatsAppWebhookPayload.Message::id).toList()
+            );
+            Set<String> senders = new LinkedHashSet<>();
+            for (WhatsAppWebhookPayload.Message message : messages) {
+                if (unprocessed.remove(message.id())) {
+                    deduplicationService.markProcessed(message.id());
+                    senders.add(message.from());
+                }
+            }
+            senders.forEach(sender -> notificationService.sendErrorMessage(
+                sender,
+                "Sorry, we encountered an error processing your request. Please try again."
+            ));
+        } catch (Exception e) {
+            log.error("Failed to notify senders of an abandoned webhook payload: {}", e.getMessage(), e);
+        }
+    }
+
+    private void claimAndDispatch(List<PendingMessage> batch, List<CompletableFuture<Void>> dispatched) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Set<String> claimed = deduplicationService.claim(
+            batch.stream().map(pending -> pending.message().id()).toList()
+        );
+        for (PendingMessage pending : batch) {
+            // remove() so a message repeated within one payload is dispatched once
+            if (claimed.remove(pending.message().id())) {
+                dispatched.add(dispatchMessage(pending.message(), pending.senderName()));
+            }
+        }
+        batch.clear();
+    }
+
+    // Failures propagate so the caller leaves a journaled payload unacknowledged. A message
+    // its sender lane refused never ran, so its claim is released for the redelivery.
+    private CompletableFuture<Void> dispatchMessage(WhatsAppWebhookPayload.Message message, String senderName) {
+        return messageCoalescer.dispatch(message, senderName).whenComplete((ignored, error) -> {
+            if (error instanceof RejectedExecutionException) {
+                log.warn("Sender lane full, releasing message {} for redelivery", message.id());
+                deduplicationService.release(message.id());
+            } else if (error != null) {
+                log.error("Error processing message {}", message.id(), error);
+            }
+        });
+    }
+
+    private void processStatus(WhatsAppWebhookPayload.Status status) {
+        log.debug("Message status update: id={}, status={}",
+            status.id(), status.status());
+        messageStatusService.record(status);
+    }
+
+    private record PendingMessage(WhatsAppWebhookPayload.Message message, String senderName) {}
+}
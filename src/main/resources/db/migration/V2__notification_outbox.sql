@@ -0,0 +1,23 @@
+-- Notification outbox: user messages written in the same transaction as the state
+-- change they report, and sent to WhatsApp by NotificationOutboxRelay after commit
+
+CREATE TABLE notification_outbox (
+    id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    recipient_whatsapp_id VARCHAR(50) NOT NULL,
+    body TEXT NOT NULL,
+    buttons TEXT,
+    dedup_key VARCHAR(100) UNIQUE,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    last_error VARCHAR(500),
+    whatsapp_message_id VARCHAR(100),
+    sent_at TIMESTAMP WITH TIME ZONE,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    version BIGINT DEFAULT 0,
+    CONSTRAINT chk_notification_outbox_status CHECK (status IN ('PENDING', 'SENT', 'FAILED'))
+);
+
+CREATE INDEX idx_notification_outbox_status_created ON notification_outbox(status, created_at);
+CREATE INDEX idx_notification_outbox_recipient ON notification_outbox(recipient_whatsapp_id);
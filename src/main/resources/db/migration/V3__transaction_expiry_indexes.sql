@@ -0,0 +1,8 @@
+-- Partial indexes for the chunked expiry jobs, which walk overdue rows of one status in
+-- id order. They hold only live rows, so they stay small however large transactions gets
+
+CREATE INDEX idx_transactions_pending_confirmation ON transactions(id)
+    WHERE status = 'PENDING_CONFIRMATION';
+
+CREATE INDEX idx_transactions_stk_pushed ON transactions(id)
+    WHERE status = 'STK_PUSHED';
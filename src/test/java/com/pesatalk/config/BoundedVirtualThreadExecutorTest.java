@@ -0,0 +1,57 @@
+package com.pesatalk.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedVirtualThreadExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    @DisplayName("Should refuse a task at the concurrency limit instead of parking the submitter")
+    void shouldRejectWhenFull() throws Exception {
+        try (BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor("test-", 1, 1_000, false)) {
+            occupy(executor);
+
+            assertThat(executor.utilisation()).isEqualTo(1.0);
+            assertThatThrownBy(() -> executor.execute(() -> {}))
+                .isInstanceOf(TaskRejectedException.class);
+            release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should run a task on the caller's thread at the limit when configured to")
+    void shouldRunOnCallerWhenFull() throws Exception {
+        try (BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor("test-", 1, 1_000, true)) {
+            occupy(executor);
+
+            AtomicReference<Thread> ranOn = new AtomicReference<>();
+            executor.execute(() -> ranOn.set(Thread.currentThread()));
+
+            assertThat(ranOn.get()).isSameAs(Thread.currentThread());
+            release.countDown();
+        }
+    }
+
+    private void occupy(BoundedVirtualThreadExecutor executor) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -2,7 +2,12 @@ package com.pesatalk.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pesatalk.config.SecurityConfig;
-import com.pesatalk.service.MessageProcessingService;
+import com.pesatalk.exception.WebhookOverloadException;
+import com.pesatalk.service.webhook.WebhookIngestQueue;
+import com.pesatalk.service.webhook.WebhookLoadShedder;
+import com.pesatalk.service.webhook.WebhookPayloadProcessor;
+import com.pesatalk.service.webhook.WebhookSignatureVerifier;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -11,6 +16,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
@@ -19,15 +25,26 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(WebhookController.class)
-@Import(SecurityConfig.class)
+@Import({SecurityConfig.class, WebhookSignatureVerifier.class})
 @TestPropertySource(properties = {
     "whatsapp.api.verify-token=test-verify-token",
     "whatsapp.api.app-secret=test-app-secret"
@@ -41,17 +58,30 @@ class WebhookControllerTest {
     private ObjectMapper objectMapper;
 
     @MockBean
-    private MessageProcessingService messageProcessingService;
+    private WebhookPayloadProcessor payloadProcessor;
+
+    @MockBean
+    private WebhookIngestQueue ingestQueue;
 
     @MockBean(name = "webhookExecutor")
     private Executor webhookExecutor;
 
+    @MockBean
+    private WebhookLoadShedder loadShedder;
+
     @Value("${whatsapp.api.verify-token}")
     private String verifyToken;
 
     @Value("${whatsapp.api.app-secret}")
     private String appSecret;
 
+    @BeforeEach
+    void setUp() {
+        when(loadShedder.track(any())).thenAnswer(invocation -> (Runnable) () -> ((Supplier<?>) invocation.getArgument(0)).get());
+        when(loadShedder.reject(anyString())).thenAnswer(invocation ->
+            WebhookOverloadException.shed(invocation.getArgument(0), 503, 30));
+    }
+
     @Nested
     @DisplayName("Webhook Verification (GET)")
     class WebhookVerificationTests {
@@ -134,6 +164,140 @@ class WebhookControllerTest {
                     .header("X-Hub-Signature-256", signature)
                     .content(payload))
                 .andExpect(status().isOk());
+
+            verify(webhookExecutor).execute(any());
+        }
+
+        @Test
+        @DisplayName("Should hand a payload that fails in memory to the ingest stream")
+        void shouldJournalPayloadThatFailsInMemory() throws Exception {
+            String payload = """
+                {
+                    "object": "whatsapp_business_account",
+                    "entry": []
+                }
+                """;
+            when(payloadProcessor.process(any())).thenReturn(
+                CompletableFuture.failedFuture(new RejectedExecutionException("lane full")));
+            doAnswer(invocation -> {
+                invocation.<Runnable>getArgument(0).run();
+                return null;
+            }).when(webhookExecutor).execute(any());
+
+            mockMvc.perform(post("/webhook")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("X-Hub-Signature-256", "sha256=" + computeHmacSha256(payload, appSecret))
+                    .content(payload))
+                .andExpect(status().isOk());
+
+            verify(ingestQueue).append(any());
+            verify(loadShedder).spilled("processing_failed");
+        }
+
+        @Test
+        @DisplayName("Should journal payload before acknowledging when ingest is enabled")
+        void shouldJournalPayloadWhenIngestEnabled() throws Exception {
+            String payload = """
+                {
+                    "object": "whatsapp_business_account",
+                    "entry": []
+                }
+                """;
+            when(ingestQueue.isEnabled()).thenReturn(true);
+
+            mockMvc.perform(post("/webhook")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("X-Hub-Signature-256", "sha256=" + computeHmacSha256(payload, appSecret))
+                    .content(payload))
+                .andExpect(status().isOk());
+
+            verify(ingestQueue).append(any());
+            verify(webhookExecutor, never()).execute(any());
+        }
+
+        @Test
+        @DisplayName("Should ask for redelivery when the journal is unavailable")
+        void shouldReturnServiceUnavailableWhenJournalFails() throws Exception {
+            String payload = """
+                {
+                    "object": "whatsapp_business_account",
+                    "entry": []
+                }
+                """;
+            when(ingestQueue.isEnabled()).thenReturn(true);
+            when(ingestQueue.append(any())).thenThrow(new IllegalStateException("redis down"));
+
+            mockMvc.perform(post("/webhook")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("X-Hub-Signature-256", "sha256=" + computeHmacSha256(payload, appSecret))
+                    .content(payload))
+                .andExpect(status().isServiceUnavailable());
+        }
+
+        @Test
+        @DisplayName("Should ask Meta to retry later when overloaded")
+        void shouldShedLoadWhenOverloaded() throws Exception {
+            String payload = """
+                {
+                    "object": "whatsapp_business_account",
+                    "entry": []
+                }
+                """;
+            when(loadShedder.overloadReason()).thenReturn("saturated");
+
+            mockMvc.perform(post("/webhook")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("X-Hub-Signature-256", "sha256=" + computeHmacSha256(payload, appSecret))
+                    .content(payload))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "30"));
+
+            verify(webhookExecutor, never()).execute(any());
+            verify(loadShedder).reject("saturated");
+        }
+
+        @Test
+        @DisplayName("Should shed instead of dropping when the executor rejects the task")
+        void shouldShedLoadWhenExecutorRejects() throws Exception {
+            String payload = """
+                {
+                    "object": "whatsapp_business_account",
+                    "entry": []
+                }
+                """;
+            doThrow(new TaskRejectedException("queue full")).when(webhookExecutor).execute(any());
+
+            mockMvc.perform(post("/webhook")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("X-Hub-Signature-256", "sha256=" + computeHmacSha256(payload, appSecret))
+                    .content(payload))
+                .andExpect(status().isServiceUnavailable());
+
+            verify(loadShedder).untrack();
+            verify(loadShedder).reject("executor_rejected");
+        }
+
+        @Test
+        @DisplayName("Should spill overflow to the journal when configured to")
+        void shouldSpillOverflowToJournal() throws Exception {
+            String payload = """
+                {
+                    "object": "whatsapp_business_account",
+                    "entry": []
+                }
+                """;
+            when(loadShedder.overloadReason()).thenReturn("queue_delay");
+            when(loadShedder.spillsToJournal()).thenReturn(true);
+
+            mockMvc.perform(post("/webhook")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("X-Hub-Signature-256", "sha256=" + computeHmacSha256(payload, appSecret))
+                    .content(payload))
+                .andExpect(status().isOk());
+
+            verify(ingestQueue).append(any());
+            verify(loadShedder).spilled("queue_delay");
+            verify(webhookExecutor, never()).execute(any());
         }
 
         @Test
@@ -0,0 +1,88 @@
+package com.pesatalk.integration.mpesa;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.MappingBuilder;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.matchingJsonPath;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+// A stand-in for the Daraja endpoints MPesaClient calls, answering with the payloads the
+// sandbox returns. Start it, point mpesa.api.base-url at baseUrl(), and script outcomes
+// per checkout request ID.
+public class DarajaStub {
+
+    public static final String ACCESS_TOKEN = "stub-access-token";
+    public static final String QUERY_PATH = "/mpesa/stkpushquery/v1/query";
+
+    private final WireMockServer server = new WireMockServer(options().dynamicPort());
+
+    public DarajaStub start() {
+        server.start();
+        server.stubFor(get(urlEqualTo("/oauth/v1/generate?grant_type=client_credentials"))
+            .willReturn(okJson("""
+                {"access_token": "%s", "expires_in": "3599"}
+                """.formatted(ACCESS_TOKEN))));
+        return this;
+    }
+
+    public void stop() {
+        server.stop();
+    }
+
+    public String baseUrl() {
+        return server.baseUrl();
+    }
+
+    public WireMockServer server() {
+        return server;
+    }
+
+    // The customer entered their PIN and paid
+    public void queryCompleted(String checkoutRequestId) {
+        queryResult(checkoutRequestId, "0", "The service request is processed successfully.");
+    }
+
+    // The customer cancelled (1032), the phone was unreachable (1037), wrong PIN (2001), ...
+    public void queryResult(String checkoutRequestId, String resultCode, String resultDesc) {
+        server.stubFor(queryFor(checkoutRequestId).willReturn(okJson("""
+            {
+              "ResponseCode": "0",
+              "ResponseDescription": "The service request has been accepted successsfully",
+              "MerchantRequestID": "22205-34066-1",
+              "CheckoutRequestID": "%s",
+              "ResultCode": "%s",
+              "ResultDesc": "%s"
+            }
+            """.formatted(checkoutRequestId, resultCode, resultDesc))));
+    }
+
+    // The prompt is still on the customer's phone
+    public void queryStillProcessing(String checkoutRequestId) {
+        error(checkoutRequestId, 500, "500.001.1001", "The transaction is being processed");
+    }
+
+    public void error(String checkoutRequestId, int status, String errorCode, String errorMessage) {
+        server.stubFor(queryFor(checkoutRequestId).willReturn(aResponse()
+            .withStatus(status)
+            .withHeader("Content-Type", "application/json")
+            .withBody("""
+                {
+                  "requestId": "2ba2-4b3e-a6e5-1",
+                  "errorCode": "%s",
+                  "errorMessage": "%s"
+                }
+                """.formatted(errorCode, errorMessage))));
+    }
+
+    private static MappingBuilder queryFor(String checkoutRequestId) {
+        return post(urlEqualTo(QUERY_PATH))
+            .withHeader("Authorization", equalTo("Bearer " + ACCESS_TOKEN))
+            .withRequestBody(matchingJsonPath("$.CheckoutRequestID", equalTo(checkoutRequestId)));
+    }
+}
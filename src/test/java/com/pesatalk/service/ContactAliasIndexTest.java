@@ -0,0 +1,87 @@
+package com.pesatalk.service;
+
+import com.pesatalk.model.Contact;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContactAliasIndexTest {
+
+    private final ContactAliasIndex index = ContactAliasIndex.of(List.of(
+        contact("John", "enc-john", false, 12),
+        contact("Mama", "enc-mama", false, 30),
+        contact("Wanjiku Kamau", "enc-wanjiku", true, 2),
+        contact("Otieno", "enc-otieno", false, 5)
+    ));
+
+    @ParameterizedTest
+    @CsvSource({
+        "john, John, 1.0",
+        "  JOHN , John, 1.0",
+        "jon, John, 0.9",
+        "jhon, John, 0.9",
+        "otienno, Otieno, 0.9",
+        "mama mboga, Mama, 0.85",
+        "wanjiku, Wanjiku Kamau, 0.85",
+        "wanjiko kamau, Wanjiku Kamau, 0.9",
+        "wanj, Wanjiku Kamau, 0.8"
+    })
+    @DisplayName("Should resolve exact, misspelt and partial names")
+    void shouldResolveFuzzyNames(String query, String expectedAlias, double expectedConfidence) {
+        List<ContactAliasIndex.Candidate> candidates = index.search(query, 0.8, 3);
+
+        assertThat(candidates).isNotEmpty();
+        assertThat(candidates.get(0).alias()).isEqualTo(expectedAlias);
+        assertThat(candidates.get(0).confidence()).isEqualTo(expectedConfidence);
+    }
+
+    @Test
+    @DisplayName("Should not match unrelated names")
+    void shouldNotMatchUnrelatedNames() {
+        assertThat(index.search("peter", 0.8, 3)).isEmpty();
+        assertThat(index.search("jo", 0.8, 3)).isEmpty();
+        assertThat(index.search("", 0.8, 3)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should rank equally close contacts by favourite, then by use")
+    void shouldBreakTiesByFavouriteAndUse() {
+        ContactAliasIndex twins = ContactAliasIndex.of(List.of(
+            contact("Joan", "enc-joan", false, 1),
+            contact("John", "enc-john", false, 9),
+            contact("Jean", "enc-jean", true, 0)
+        ));
+
+        assertThat(twins.search("jon", 0.8, 3))
+            .extracting(ContactAliasIndex.Candidate::alias)
+            .containsExactly("John", "Joan");
+        assertThat(twins.search("jen", 0.8, 3))
+            .extracting(ContactAliasIndex.Candidate::alias)
+            .containsExactly("Jean");
+    }
+
+    @Test
+    @DisplayName("Should bound the Damerau-Levenshtein distance")
+    void shouldBoundDistance() {
+        assertThat(ContactAliasIndex.boundedDistance("john", "jhon", 2)).isEqualTo(1);
+        assertThat(ContactAliasIndex.boundedDistance("kitten", "sitting", 3)).isEqualTo(3);
+        assertThat(ContactAliasIndex.boundedDistance("kitten", "sitting", 1)).isEqualTo(2);
+        assertThat(ContactAliasIndex.boundedDistance("abc", "abcdef", 2)).isEqualTo(3);
+    }
+
+    private static Contact contact(String alias, String phoneEncrypted, boolean favorite, int transactionCount) {
+        return Contact.builder()
+            .alias(alias)
+            .aliasLowercase(alias.toLowerCase())
+            .phoneNumberHash("hash-" + phoneEncrypted)
+            .phoneNumberEncrypted(phoneEncrypted)
+            .isFavorite(favorite)
+            .transactionCount(transactionCount)
+            .build();
+    }
+}
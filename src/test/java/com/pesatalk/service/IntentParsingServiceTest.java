@@ -1,6 +1,13 @@
 package com.pesatalk.service;
 
 import com.pesatalk.model.enums.Intent;
+import com.pesatalk.service.intent.AirtimeIntentParser;
+import com.pesatalk.service.intent.IntentParseCache;
+import com.pesatalk.service.intent.IntentParsingOrchestrator;
+import com.pesatalk.service.intent.InteractiveResponseParser;
+import com.pesatalk.service.intent.KeywordIntentParser;
+import com.pesatalk.service.intent.SendMoneyIntentParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -10,6 +17,8 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -19,7 +28,18 @@ class IntentParsingServiceTest {
 
     @BeforeEach
     void setUp() {
-        intentParsingService = new IntentParsingService();
+        InteractiveResponseParser interactiveParser = new InteractiveResponseParser();
+        IntentParsingOrchestrator orchestrator = new IntentParsingOrchestrator(
+            List.of(new SendMoneyIntentParser(), new AirtimeIntentParser(), new KeywordIntentParser(""), interactiveParser),
+            interactiveParser,
+            new IntentParseCache(new SimpleMeterRegistry(), 1_048_576, Duration.ofHours(1)),
+            new SimpleMeterRegistry(),
+            Runnable::run,
+            false,
+            90,
+            Duration.ofMillis(25)
+        );
+        intentParsingService = new IntentParsingService(orchestrator);
     }
 
     @Nested
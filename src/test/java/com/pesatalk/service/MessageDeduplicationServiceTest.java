@@ -0,0 +1,115 @@
+package com.pesatalk.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessageDeduplicationServiceTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final RedisConnection connection = mock(RedisConnection.class);
+    private final RedisStringCommands stringCommands = mock(RedisStringCommands.class);
+
+    // Stands in for the Redis keys, plus the replies of the pipeline being built
+    private final Map<String, String> keys = new HashMap<>();
+    private final List<Object> pipelineResults = new ArrayList<>();
+
+    private MessageDeduplicationService service;
+
+    @BeforeEach
+    void setUp() {
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        when(stringCommands.set(any(), any(), any(), any())).thenAnswer(invocation -> {
+            String key = string(invocation.getArgument(0));
+            String value = string(invocation.getArgument(1));
+            boolean stored = invocation.getArgument(3) != SetOption.ifAbsent() || !keys.containsKey(key);
+            if (stored) {
+                keys.put(key, value);
+            }
+            pipelineResults.add(stored);
+            return null;
+        });
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            pipelineResults.clear();
+            invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+            return new ArrayList<>(pipelineResults);
+        });
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(invocation ->
+            invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+        when(redisTemplate.delete(anyString())).thenAnswer(invocation -> keys.remove(invocation.<String>getArgument(0)) != null);
+
+        service = new MessageDeduplicationService(redisTemplate, Duration.ofMinutes(10), Duration.ofHours(24), 100);
+    }
+
+    @Test
+    @DisplayName("Should claim a message repeated within one batch once")
+    void shouldClaimDuplicateWithinBatchOnce() {
+        assertThat(service.claim(List.of("m1", "m2", "m1"))).containsExactly("m1", "m2");
+
+        verify(stringCommands, times(2)).set(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should skip Redis for a message this node already claimed")
+    void shouldSkipRedisOnLocalCacheHit() {
+        service.claim(List.of("m1"));
+
+        assertThat(service.claim(List.of("m1"))).isEmpty();
+
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    @DisplayName("Should not claim a message another node holds")
+    void shouldNotClaimMessageHeldElsewhere() {
+        keys.put("processed_messages:m1", "claimed");
+
+        assertThat(service.claim(List.of("m1", "m2"))).containsExactly("m2");
+    }
+
+    @Test
+    @DisplayName("Should make a released message claimable again")
+    void shouldReclaimAfterRelease() {
+        service.claim(List.of("m1"));
+
+        service.release("m1");
+
+        assertThat(keys).doesNotContainKey("processed_messages:m1");
+        assertThat(service.claim(List.of("m1"))).containsExactly("m1");
+    }
+
+    @Test
+    @DisplayName("Should keep a processed message from being claimed again")
+    void shouldNotReclaimProcessedMessage() {
+        service.claim(List.of("m1"));
+        service.markProcessed("m1");
+
+        assertThat(keys).containsEntry("processed_messages:m1", "1");
+        assertThat(service.claim(List.of("m1"))).isEmpty();
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
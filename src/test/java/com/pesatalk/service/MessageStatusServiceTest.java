@@ -0,0 +1,152 @@
+package com.pesatalk.service;
+
+import com.pesatalk.integration.whatsapp.dto.WhatsAppWebhookPayload;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessageStatusServiceTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final RedisConnection connection = mock(RedisConnection.class);
+    private final RedisHashCommands hashCommands = mock(RedisHashCommands.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Stands in for the Redis hashes, keyed by hash then field
+    private final Map<String, Map<String, String>> hashes = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        when(connection.hashCommands()).thenReturn(hashCommands);
+        when(connection.keyCommands()).thenReturn(mock(RedisKeyCommands.class));
+        doAnswer(invocation -> {
+            Map<byte[], byte[]> fields = invocation.getArgument(1);
+            Map<String, String> hash = hashes.computeIfAbsent(string(invocation.getArgument(0)), key -> new HashMap<>());
+            fields.forEach((field, value) -> hash.put(string(field), string(value)));
+            return null;
+        }).when(hashCommands).hMSet(any(), any());
+        when(hashCommands.hGetAll(any())).thenAnswer(invocation -> {
+            Map<byte[], byte[]> raw = new HashMap<>();
+            hashes.getOrDefault(string(invocation.getArgument(0)), Map.of())
+                .forEach((field, value) -> raw.put(bytes(field), bytes(value)));
+            return raw;
+        });
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(runAgainstConnection());
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(runAgainstConnection());
+    }
+
+    @Test
+    @DisplayName("Should keep the latest timestamp per state when receipts are merged before a flush")
+    void shouldMergeLatestTimestampPerState() {
+        MessageStatusService service = service(500);
+
+        service.record(status("wamid.1", "delivered", "1700000100"));
+        service.record(status("wamid.1", "delivered", "1700000050"));
+        service.record(status("wamid.1", "sent", "1700000010"));
+        service.flush();
+
+        assertThat(hashes.get("wa:status:wamid.1"))
+            .containsEntry("delivered_at", "1700000100000")
+            .containsEntry("sent_at", "1700000010000")
+            .containsEntry("recipient", "254711111111");
+    }
+
+    @Test
+    @DisplayName("Should derive the latest state from receipts that arrived out of order")
+    void shouldFindLatestStateFromOutOfOrderReceipts() {
+        MessageStatusService service = service(500);
+
+        service.record(status("wamid.1", "read", "1700000300"));
+        service.flush();
+        service.record(status("wamid.1", "delivered", "1700000200"));
+        service.record(status("wamid.1", "sent", "1700000100"));
+        service.flush();
+
+        assertThat(service.find("wamid.1"))
+            .hasValueSatisfying(status -> {
+                assertThat(status.status()).isEqualTo("read");
+                assertThat(status.recipientId()).isEqualTo("254711111111");
+            });
+        assertThat(service.find("wamid.unknown")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should buffer a failed pipelined write again and write it on the next flush")
+    void shouldRebufferFailedWrite() {
+        MessageStatusService service = service(500);
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+            .thenThrow(new RedisConnectionFailureException("down"))
+            .thenAnswer(runAgainstConnection());
+
+        service.record(status("wamid.1", "delivered", "1700000100"));
+        service.flush();
+
+        assertThat(hashes).isEmpty();
+        assertThat(meterRegistry.counter("whatsapp.status.flush.failures").count()).isEqualTo(1);
+
+        service.flush();
+
+        assertThat(hashes.get("wa:status:wamid.1")).containsEntry("delivered_at", "1700000100000");
+    }
+
+    @Test
+    @DisplayName("Should split a flush into pipelines of at most max-batch-size messages")
+    void shouldSplitFlushByMaxBatchSize() {
+        MessageStatusService service = service(2);
+
+        for (int i = 1; i <= 5; i++) {
+            service.record(status("wamid." + i, "sent", "1700000100"));
+        }
+        service.flush();
+
+        verify(redisTemplate, times(3)).executePipelined(any(RedisCallback.class));
+        verify(hashCommands, times(5)).hMSet(any(), any());
+        assertThat(hashes).hasSize(5);
+    }
+
+    private MessageStatusService service(int maxBatchSize) {
+        return new MessageStatusService(redisTemplate, meterRegistry, Duration.ofDays(7), maxBatchSize, 100);
+    }
+
+    private Answer<Object> runAgainstConnection() {
+        return invocation -> {
+            Object result = invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+            return result != null ? result : List.of();
+        };
+    }
+
+    private static WhatsAppWebhookPayload.Status status(String id, String state, String timestamp) {
+        return new WhatsAppWebhookPayload.Status(id, state, timestamp, "254711111111", null, null, null);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
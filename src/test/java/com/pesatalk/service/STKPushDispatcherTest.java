@@ -0,0 +1,164 @@
+package com.pesatalk.service;
+
+import com.pesatalk.integration.mpesa.MPesaClient;
+import com.pesatalk.integration.mpesa.dto.STKPushResponse;
+import com.pesatalk.model.Transaction;
+import com.pesatalk.model.User;
+import com.pesatalk.model.enums.TransactionStatus;
+import com.pesatalk.model.enums.TransactionType;
+import com.pesatalk.repository.TransactionRepository;
+import com.pesatalk.service.outbox.NotificationOutbox;
+import com.pesatalk.util.PhoneNumberUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class STKPushDispatcherTest {
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final MPesaClient mpesaClient = mock(MPesaClient.class);
+    private final NotificationOutbox notificationOutbox = mock(NotificationOutbox.class);
+    private final PhoneNumberUtil phoneNumberUtil = new PhoneNumberUtil("0123456789abcdef0123456789abcdef");
+
+    // Tracks whether the code under test is inside a database transaction
+    private final AtomicBoolean inTransaction = new AtomicBoolean();
+    private final PlatformTransactionManager transactionManager = new PlatformTransactionManager() {
+        @Override
+        public org.springframework.transaction.TransactionStatus getTransaction(TransactionDefinition definition) {
+            inTransaction.set(true);
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(org.springframework.transaction.TransactionStatus status) {
+            inTransaction.set(false);
+        }
+
+        @Override
+        public void rollback(org.springframework.transaction.TransactionStatus status) {
+            inTransaction.set(false);
+        }
+    };
+
+    private Transaction transaction;
+
+    @BeforeEach
+    void setUp() {
+        User sender = User.builder().whatsAppId("254711111111").build();
+        transaction = Transaction.builder()
+            .sender(sender)
+            .transactionType(TransactionType.SEND_MONEY)
+            .status(TransactionStatus.CONFIRMED)
+            .amount(new BigDecimal("1500"))
+            .recipientPhoneEncrypted(phoneNumberUtil.encryptPhoneNumber("254722222222"))
+            .accountReference("PesaTalk")
+            .description("Send money via PesaTalk")
+            .build();
+        transaction.setId(UUID.randomUUID());
+        when(transactionRepository.findByIdWithLock(transaction.getId())).thenReturn(Optional.of(transaction));
+    }
+
+    @Test
+    @DisplayName("Should claim, call Daraja outside any transaction, then record STK_PUSHED")
+    void shouldPushOutsideTransaction() {
+        AtomicBoolean calledInTransaction = new AtomicBoolean(true);
+        when(mpesaClient.initiateSTKPushReactive(eq("254722222222"), any(), anyString(), anyString()))
+            .thenReturn(Mono.fromCallable(() -> {
+                calledInTransaction.set(inTransaction.get());
+                assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.PROCESSING);
+                return new STKPushResponse("m-1", "ws_CO_1", "0", "Accepted", "Enter PIN", null, null);
+            }));
+
+        dispatcher(Runnable::run).dispatchAfterCommit(transaction.getId());
+
+        assertThat(calledInTransaction).isFalse();
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.STK_PUSHED);
+        assertThat(transaction.getCheckoutRequestId()).isEqualTo("ws_CO_1");
+        verify(notificationOutbox).enqueueMessage(eq("254711111111"), anyString(), eq("tx:" + transaction.getId() + ":STK_PUSHED"));
+    }
+
+    @Test
+    @DisplayName("Should push airtime with a description Daraja will not truncate")
+    void shouldPushAirtimeWithShortDescription() {
+        transaction.setTransactionType(TransactionType.BUY_AIRTIME);
+        transaction.setAccountReference("Airtime");
+        transaction.setDescription("Buy airtime via PesaTalk");
+        when(mpesaClient.initiateSTKPushReactive(anyString(), any(), anyString(), anyString()))
+            .thenReturn(Mono.just(new STKPushResponse("m-1", "ws_CO_1", "0", "Accepted", "Enter PIN", null, null)));
+
+        dispatcher(Runnable::run).dispatchAfterCommit(transaction.getId());
+
+        verify(mpesaClient).initiateSTKPushReactive(eq("254722222222"), any(), eq("Airtime"), eq("PesaTalk Airtime"));
+    }
+
+    @Test
+    @DisplayName("Should record FAILED when the Daraja call throws")
+    void shouldFailOnError() {
+        when(mpesaClient.initiateSTKPushReactive(anyString(), any(), anyString(), anyString()))
+            .thenReturn(Mono.error(new IllegalStateException("timeout")));
+
+        dispatcher(Runnable::run).dispatchAfterCommit(transaction.getId());
+
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.FAILED);
+        assertThat(transaction.getFailureReason()).contains("timeout");
+    }
+
+    @Test
+    @DisplayName("Should not push a transaction that is no longer confirmed")
+    void shouldSkipUnconfirmed() {
+        transaction.transitionTo(TransactionStatus.CANCELLED);
+
+        dispatcher(Runnable::run).dispatchAfterCommit(transaction.getId());
+
+        verify(mpesaClient, never()).initiateSTKPushReactive(anyString(), any(), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Should leave a rejected push confirmed and queue it again from the sweep")
+    void shouldRedispatchStrandedTransactions() {
+        dispatcher(task -> {
+            throw new RejectedExecutionException("full");
+        }).dispatchAfterCommit(transaction.getId());
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.CONFIRMED);
+
+        when(transactionRepository.findIdsByStatusUpdatedBefore(eq(TransactionStatus.CONFIRMED), any(Instant.class), any()))
+            .thenReturn(List.of(transaction.getId()));
+        when(mpesaClient.initiateSTKPushReactive(anyString(), any(), anyString(), anyString()))
+            .thenReturn(Mono.just(new STKPushResponse("m-1", "ws_CO_1", "0", "Accepted", "Enter PIN", null, null)));
+
+        dispatcher(Runnable::run).redispatchConfirmed();
+
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.STK_PUSHED);
+    }
+
+    private STKPushDispatcher dispatcher(Executor executor) {
+        return new STKPushDispatcher(transactionRepository, mpesaClient, notificationOutbox, phoneNumberUtil,
+            new TransactionTemplate(transactionManager), new SimpleMeterRegistry(), executor,
+            Duration.ofMinutes(1), 100, 20);
+    }
+}
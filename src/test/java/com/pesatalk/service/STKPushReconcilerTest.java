@@ -0,0 +1,159 @@
+package com.pesatalk.service;
+
+import com.pesatalk.integration.mpesa.DarajaStub;
+import com.pesatalk.integration.mpesa.MPesaAuthService;
+import com.pesatalk.integration.mpesa.MPesaClient;
+import com.pesatalk.integration.mpesa.dto.STKCallbackPayload;
+import com.pesatalk.model.Transaction;
+import com.pesatalk.model.User;
+import com.pesatalk.model.enums.TransactionStatus;
+import com.pesatalk.model.enums.TransactionType;
+import com.pesatalk.repository.TransactionRepository;
+import com.pesatalk.service.outbox.NotificationOutbox;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class STKPushReconcilerTest {
+
+    private final DarajaStub daraja = new DarajaStub();
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final TransactionService transactionService = mock(TransactionService.class);
+    private final NotificationOutbox notificationOutbox = mock(NotificationOutbox.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private STKPushReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        daraja.start();
+        MPesaAuthService authService = new MPesaAuthService(WebClient.builder(), daraja.baseUrl(), "key", "secret");
+        MPesaClient mpesaClient = new MPesaClient(WebClient.builder(), authService,
+            CircuitBreakerRegistry.ofDefaults(), RetryRegistry.ofDefaults(), RateLimiterRegistry.ofDefaults(),
+            BulkheadRegistry.ofDefaults(), daraja.baseUrl(), "174379", "passkey", "https://pesatalk.test");
+
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        reconciler = new STKPushReconciler(transactionRepository, mpesaClient, transactionService,
+            notificationOutbox, new TransactionTemplate(transactionManager), new SimpleMeterRegistry(),
+            Duration.ofMinutes(2), Duration.ofMinutes(10), 100, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        daraja.stop();
+    }
+
+    @Test
+    @DisplayName("Should apply a paid push found by query as a successful callback")
+    void shouldCompletePaidPush() {
+        pushed("ws_CO_1");
+        daraja.queryCompleted("ws_CO_1");
+
+        reconciler.reconcile();
+
+        STKCallbackPayload callback = appliedCallback();
+        assertThat(callback.getCheckoutRequestId()).isEqualTo("ws_CO_1");
+        assertThat(callback.isSuccessful()).isTrue();
+        assertThat(callback.getMpesaReceiptNumber()).isNull();
+        daraja.server().verify(postRequestedFor(urlEqualTo(DarajaStub.QUERY_PATH)));
+    }
+
+    @Test
+    @DisplayName("Should apply a cancelled push as a failed callback with Daraja's reason")
+    void shouldFailCancelledPush() {
+        pushed("ws_CO_2");
+        daraja.queryResult("ws_CO_2", "1032", "Request cancelled by user");
+
+        reconciler.reconcile();
+
+        STKCallbackPayload callback = appliedCallback();
+        assertThat(callback.isSuccessful()).isFalse();
+        assertThat(callback.getResultCode()).isEqualTo(1032);
+        assertThat(callback.getResultDescription()).isEqualTo("Request cancelled by user");
+    }
+
+    @Test
+    @DisplayName("Should leave a push the customer is still looking at for the next run")
+    void shouldWaitOnProcessingPush() {
+        pushed("ws_CO_3");
+        daraja.queryStillProcessing("ws_CO_3");
+
+        reconciler.reconcile();
+
+        verify(transactionService, never()).processSTKCallback(any());
+    }
+
+    @Test
+    @DisplayName("Should settle the answered pushes when a query fails")
+    void shouldSkipFailedQueries() {
+        pushed("ws_CO_4", "ws_CO_5");
+        daraja.error("ws_CO_4", 400, "400.002.02", "Bad Request - Invalid CheckoutRequestID");
+        daraja.queryCompleted("ws_CO_5");
+
+        reconciler.reconcile();
+
+        assertThat(appliedCallback().getCheckoutRequestId()).isEqualTo("ws_CO_5");
+    }
+
+    @Test
+    @DisplayName("Should fail a transaction stranded in PROCESSING and tell the sender")
+    void shouldFailStrandedProcessing() {
+        Transaction transaction = Transaction.builder()
+            .sender(User.builder().whatsAppId("254711111111").build())
+            .transactionType(TransactionType.SEND_MONEY)
+            .status(TransactionStatus.PROCESSING)
+            .amount(new BigDecimal("500"))
+            .build();
+        transaction.setId(UUID.randomUUID());
+        when(transactionRepository.findIdsByStatusUpdatedBefore(eq(TransactionStatus.PROCESSING), any(Instant.class), any()))
+            .thenReturn(List.of(transaction.getId()));
+        when(transactionRepository.findByIdWithLock(transaction.getId())).thenReturn(Optional.of(transaction));
+
+        reconciler.reconcile();
+
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.FAILED);
+        verify(notificationOutbox).enqueueMessage(eq("254711111111"), anyString(),
+            eq("tx:" + transaction.getId() + ":FAILED"));
+    }
+
+    private void pushed(String... checkoutRequestIds) {
+        when(transactionRepository.findCheckoutRequestIdsPushedBefore(eq(TransactionStatus.STK_PUSHED), any(Instant.class), any()))
+            .thenReturn(List.of(checkoutRequestIds));
+    }
+
+    private STKCallbackPayload appliedCallback() {
+        ArgumentCaptor<STKCallbackPayload> callback = ArgumentCaptor.forClass(STKCallbackPayload.class);
+        verify(transactionService, times(1)).processSTKCallback(callback.capture());
+        return callback.getValue();
+    }
+}
@@ -0,0 +1,57 @@
+package com.pesatalk.service.intent;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AmountScannerTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "1500", "1,500", "1,500,000", "100.50", "100.5", "0.99", "007", "1,5,0,0", "70000.00",
+        "123456789012345678", "1234567890123456789012.25"
+    })
+    @DisplayName("Should match BigDecimal parsing of separator-stripped digits, scale included")
+    void shouldMatchLegacyParsing(String amount) {
+        BigDecimal legacy = new BigDecimal(amount.replaceAll("[,\\s]", ""));
+
+        assertThat(AmountScanner.parse(amount)).isEqualTo(legacy);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "'kes 1,500', 1500",
+        "'KES1500', 1500",
+        "'  1 500  ', 1500",
+        "'2k', 2000",
+        "'1.5K', 1500",
+        "'2.25k', 2250",
+        "'500 bob', 500",
+        "'kes 1.2345k', 1234.5"
+    })
+    @DisplayName("Should read prefixes, suffixes and spaced thousands")
+    void shouldReadPrefixesAndSuffixes(String text, String expected) {
+        assertThat(AmountScanner.parse(text)).isEqualTo(new BigDecimal(expected));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "kes", ",,,", "abc", "-500", "1e3", "12.3.4", "1.5,0", "k", "bob", "500 shillings"})
+    @DisplayName("Should reject anything that is not a plain amount")
+    void shouldRejectNonAmounts(String text) {
+        assertThat(AmountScanner.parse(text)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should scan a region of a larger text")
+    void shouldScanRegion() {
+        String text = "send 1,500.50 to john";
+
+        assertThat(AmountScanner.parse(text, 5, 13)).isEqualTo(new BigDecimal("1500.50"));
+    }
+}
@@ -0,0 +1,111 @@
+package com.pesatalk.service.intent;
+
+import com.pesatalk.model.enums.Intent;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+class ClassifierIntentParserTest {
+
+    private static IntentClassifier classifier;
+
+    @BeforeAll
+    static void train() {
+        classifier = IntentClassifier.train(List.of(
+            example(Intent.SEND_MONEY, "nitumie mama pesa"),
+            example(Intent.SEND_MONEY, "tumia john elfu mbili"),
+            example(Intent.SEND_MONEY, "nataka kutuma doh kwa brian"),
+            example(Intent.SEND_MONEY, "please tuma 500 to wanjiku"),
+            example(Intent.SEND_MONEY, "mtumie otieno 200 bob"),
+            example(Intent.BUY_AIRTIME, "niwekee credo ya 50"),
+            example(Intent.BUY_AIRTIME, "nataka credo"),
+            example(Intent.BUY_AIRTIME, "naomba airtime ya mia"),
+            example(Intent.BUY_AIRTIME, "load credit kwa line yangu"),
+            example(Intent.BUY_AIRTIME, "niko na zero credo"),
+            example(Intent.CHECK_BALANCE, "niko na pesa ngapi"),
+            example(Intent.CHECK_BALANCE, "nibaki na ngapi kwa account"),
+            example(Intent.CHECK_BALANCE, "ako na doh ngapi"),
+            example(Intent.CHECK_BALANCE, "how much iko kwa account yangu"),
+            example(Intent.TRANSACTION_HISTORY, "nionyeshe nilituma nini wiki hii"),
+            example(Intent.TRANSACTION_HISTORY, "nilitumia nani jana"),
+            example(Intent.TRANSACTION_HISTORY, "show me nilichotuma mwezi huu"),
+            example(Intent.TRANSACTION_HISTORY, "ile list ya malipo zangu")
+        ), 14, 60, 7L);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "nitumie brian pesa, SEND_MONEY",
+        "niwekee credo, BUY_AIRTIME",
+        "niko na ngapi kwa account, CHECK_BALANCE",
+        "nilituma nini jana, TRANSACTION_HISTORY"
+    })
+    @DisplayName("Should classify code-switched messages outside the rule-based grammars")
+    void shouldClassifyCodeSwitchedMessages(String text, Intent expected) {
+        ClassifierIntentParser parser = new ClassifierIntentParser(classifier, 0.3, 0.8);
+
+        assertThat(parser.parse(text))
+            .get()
+            .satisfies(parsed -> {
+                assertThat(parsed.intent()).isEqualTo(expected);
+                assertThat(parsed.confidence()).isLessThanOrEqualTo(0.8);
+                assertThat(parsed.amount()).isNull();
+            });
+    }
+
+    @Test
+    @DisplayName("Should stay silent below the minimum probability or without a model")
+    void shouldStaySilentWhenUnsure() {
+        assertThat(new ClassifierIntentParser(classifier, 0.999, 0.8).parse("habari yako")).isEmpty();
+        assertThat(new ClassifierIntentParser(false, "", 0.6, 0.8).parse("nitumie mama pesa")).isEmpty();
+        assertThat(new ClassifierIntentParser(classifier, 0.3, 0.8).parse("  !!  ")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should predict identically after a write and read round trip")
+    void shouldRoundTripModel() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        classifier.write(out);
+        IntentClassifier loaded = IntentClassifier.read(new ByteArrayInputStream(out.toByteArray()));
+
+        for (String text : List.of("nitumie mama pesa", "niwekee credo", "tuma 1,000 kwa Mama!")) {
+            assertThat(loaded.predict(text)).isEqualTo(classifier.predict(text));
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject a model whose header is out of range before allocating its weights")
+    void shouldRejectCorruptHeader() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        classifier.write(out);
+        byte[] model = out.toByteArray();
+
+        // Header: magic, version, min n, max n, bucket bits, classes
+        assertThat(readWithHeaderInt(model, 4, 31)).hasMessageContaining("31 bucket bits");
+        assertThat(readWithHeaderInt(model, 3, 1000)).hasMessageContaining("n-gram range");
+        assertThat(readWithHeaderInt(model, 2, 0)).hasMessageContaining("n-gram range");
+        assertThat(readWithHeaderInt(model, 5, -1)).hasMessageContaining("-1 classes");
+    }
+
+    private static Throwable readWithHeaderInt(byte[] model, int index, int value) {
+        byte[] corrupt = model.clone();
+        ByteBuffer.wrap(corrupt).putInt(index * Integer.BYTES, value);
+        return catchThrowableOfType(
+            () -> IntentClassifier.read(new ByteArrayInputStream(corrupt)), IOException.class);
+    }
+
+    private static IntentClassifier.Example example(Intent intent, String text) {
+        return new IntentClassifier.Example(intent, text);
+    }
+}
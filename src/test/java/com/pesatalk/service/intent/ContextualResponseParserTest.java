@@ -0,0 +1,90 @@
+package com.pesatalk.service.intent;
+
+import com.pesatalk.model.enums.Intent;
+import com.pesatalk.service.intent.ConversationContext.PendingQuestion;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextualResponseParserTest {
+
+    private final ContextualResponseParser parser = new ContextualResponseParser();
+
+    @ParameterizedTest
+    @EnumSource(PendingQuestion.class)
+    @DisplayName("Should have a handler for every pending question")
+    void shouldHandleEveryPendingQuestion(PendingQuestion question) {
+        assertThat(parser.parse("hello", context(question))).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should fill the amount into the intent being built")
+    void shouldParseAmountReply() {
+        ConversationContext context = context(PendingQuestion.AWAITING_AMOUNT);
+        context.setCurrentIntent(Intent.SEND_MONEY);
+        context.setRecipient("john");
+
+        ParsedIntent result = parser.parse("kes 1,500", context).orElseThrow();
+
+        assertThat(result.intent()).isEqualTo(Intent.SEND_MONEY);
+        assertThat(result.amount()).isEqualByComparingTo(new BigDecimal("1500"));
+        assertThat(result.recipientIdentifier()).isEqualTo("john");
+        assertThat(parser.parse("not sure", context)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"yes", " Ndio ", "SAWA", "ok", "proceed"})
+    @DisplayName("Should read English and Swahili confirmations")
+    void shouldConfirm(String reply) {
+        assertThat(parser.parse(reply, context(PendingQuestion.AWAITING_CONFIRMATION)).orElseThrow().intent())
+            .isEqualTo(Intent.CONFIRM_TRANSACTION);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"no", "Hapana", "acha", "STOP"})
+    @DisplayName("Should read English and Swahili cancellations")
+    void shouldCancel(String reply) {
+        assertThat(parser.parse(reply, context(PendingQuestion.AWAITING_CONFIRMATION)).orElseThrow().intent())
+            .isEqualTo(Intent.CANCEL_TRANSACTION);
+    }
+
+    @Test
+    @DisplayName("Should leave other replies to a confirmation and any PIN reply to normal parsing")
+    void shouldIgnoreUnrelatedReplies() {
+        assertThat(parser.parse("yes please send it", context(PendingQuestion.AWAITING_CONFIRMATION))).isEmpty();
+        assertThat(parser.parse("1234", context(PendingQuestion.AWAITING_PIN))).isEmpty();
+        assertThat(parser.parse("   ", context(PendingQuestion.AWAITING_RECIPIENT))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should collect a contact's name and number across two replies")
+    void shouldParseContactReplies() {
+        ConversationContext naming = context(PendingQuestion.AWAITING_CONTACT_NAME);
+        naming.setRecipientPhone("254712345678");
+        ParsedIntent name = parser.parse(" Mama Mboga ", naming).orElseThrow();
+
+        assertThat(name.intent()).isEqualTo(Intent.ADD_CONTACT);
+        assertThat(name.recipientIdentifier()).isEqualTo("Mama Mboga");
+        assertThat(name.metadata()).containsEntry("phoneNumber", "254712345678");
+
+        ConversationContext numbering = context(PendingQuestion.AWAITING_CONTACT_PHONE);
+        numbering.setRecipient("Mama Mboga");
+        ParsedIntent phone = parser.parse("0712-345 678", numbering).orElseThrow();
+
+        assertThat(phone.recipientIdentifier()).isEqualTo("Mama Mboga");
+        assertThat(phone.metadata()).containsEntry("phoneNumber", "254712345678");
+        assertThat(parser.parse("john", numbering)).isEmpty();
+    }
+
+    private static ConversationContext context(PendingQuestion question) {
+        ConversationContext context = new ConversationContext();
+        context.setPendingQuestion(question);
+        return context;
+    }
+}
@@ -0,0 +1,64 @@
+package com.pesatalk.service.intent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntentParseCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private IntentParseCache cache;
+    private AtomicInteger parses;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new IntentParseCache(meterRegistry, 1_048_576, Duration.ofHours(1));
+        parses = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Should parse a repeated text once regardless of case and padding")
+    void shouldServeRepeatedTextsFromCache() {
+        ParsedIntent first = parse("balance", null);
+        ParsedIntent second = parse("  BALANCE ", null);
+
+        assertThat(second).isSameAs(first);
+        assertThat(parses).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should never keep results that name a recipient")
+    void shouldNotCacheRecipients() {
+        parse("send 500 to john", "john");
+        parse("send 500 to john", "john");
+
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Should bypass the cache for case-sensitive or long texts")
+    void shouldSkipUncacheableTexts() {
+        parse("confirm_ABC", null);
+        parse("confirm_ABC", null);
+        parse("x".repeat(65), null);
+        parse("x".repeat(65), null);
+
+        assertThat(parses).hasValue(4);
+        assertThat(meterRegistry.get("intent.parse.cache.skipped").counter().count()).isEqualTo(4);
+    }
+
+    private ParsedIntent parse(String text, String recipient) {
+        return cache.get("test", text, t -> {
+            parses.incrementAndGet();
+            return ParsedIntent.builder().recipientIdentifier(recipient).build();
+        }, parsed -> parsed.recipientIdentifier() == null);
+    }
+}
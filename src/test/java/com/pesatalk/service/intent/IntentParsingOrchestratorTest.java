@@ -0,0 +1,156 @@
+package com.pesatalk.service.intent;
+
+import com.pesatalk.model.enums.Intent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntentParsingOrchestratorTest {
+
+    private final ExecutorService fanOutExecutor = Executors.newFixedThreadPool(4);
+    private List<IntentParser> parsers;
+    private IntentParsingOrchestrator orchestrator;
+
+    @BeforeEach
+    void setUp() {
+        InteractiveResponseParser interactiveParser = new InteractiveResponseParser();
+        parsers = List.of(
+            new KeywordIntentParser(""),
+            new SendMoneyIntentParser(),
+            interactiveParser,
+            new AirtimeIntentParser()
+        );
+        orchestrator = new IntentParsingOrchestrator(parsers, interactiveParser,
+            new IntentParseCache(new SimpleMeterRegistry(), 1_048_576, Duration.ofHours(1)),
+            new SimpleMeterRegistry(), Runnable::run, false, 90, Duration.ofMillis(25));
+    }
+
+    @AfterEach
+    void tearDown() {
+        fanOutExecutor.shutdownNow();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "send 1500 to john", "SEND KES 1,500 TO JOHN", "  transfer 500 to mama  ", "pay 2000 to 0712345678",
+        "give john 300", "send john 1500", "1500 to john", "kes 250 for dad", "tuma 300 kwa jane",
+        "peleka 100 kwa mama", "buy airtime 100", "airtime 50 for 0712345678", "bundles 20",
+        "100 airtime", "kes 50 credit to mama", "top up 200", "topup 100 for 0712345678",
+        "recharge 500", "nunua airtime 100 kwa baba", "confirm_abc-123", "cancel_abc-123",
+        "select_contact_42", "select_amount_100", "select_amount_x", "Confirm_abc",
+        "balance", "check my balance", "send help", "send money please?", "history of airtime",
+        "how do i pay 500 to john", "hi", "hello there", "12345", "?", "sendx 100 to john",
+        "send\t500\tto\tjohn", "ſend 100 to john", "ÉCHANGE 100", "-100 to john"
+    })
+    @DisplayName("Should return exactly what trying every parser in priority order returns")
+    void shouldMatchSequentialParsing(String text) {
+        assertThat(orchestrator.parseText(text)).isEqualTo(parseSequentially(text));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "send 1500 to john", "buy airtime 100", "balance", "check my balance", "send help",
+        "history of airtime", "how do i pay 500 to john", "please show my transactions", "hi", "?"
+    })
+    @DisplayName("Should return the same result when low-priority parsers run concurrently")
+    void shouldMatchSequentialParsingWhenFannedOut(String text) {
+        IntentParsingOrchestrator fannedOut = new IntentParsingOrchestrator(parsers, new InteractiveResponseParser(),
+            new IntentParseCache(new SimpleMeterRegistry(), 1_048_576, Duration.ofHours(1)),
+            new SimpleMeterRegistry(), fanOutExecutor, true, 90, Duration.ofSeconds(5));
+
+        assertThat(fannedOut.parseText(text)).isEqualTo(parseSequentially(text));
+    }
+
+    @Test
+    @DisplayName("Should take the best result available at the deadline and time every parser")
+    void shouldDropParsersThatMissTheDeadline() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IntentParsingOrchestrator fannedOut = new IntentParsingOrchestrator(
+            List.of(new KeywordIntentParser(""), new SlowParser()), new InteractiveResponseParser(),
+            new IntentParseCache(new SimpleMeterRegistry(), 1_048_576, Duration.ofHours(1)),
+            meterRegistry, fanOutExecutor, true, 90, Duration.ofMillis(50));
+
+        long start = System.nanoTime();
+        ParsedIntent result = fannedOut.parseText("what about my balance");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        assertThat(result.intent()).isEqualTo(Intent.CHECK_BALANCE);
+        assertThat(meterRegistry.get("intent.parser.timeouts").tag("parser", "SlowParser").counter().count())
+            .isEqualTo(1.0);
+        assertThat(meterRegistry.get("intent.parser.duration").tag("parser", "KeywordIntentParser").timer().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should still find keywords anywhere in a message with an unknown lead")
+    void shouldConsultUnanchoredParsersForUnknownLead() {
+        ParsedIntent result = orchestrator.parseText("please show my transactions");
+
+        assertThat(result.intent()).isEqualTo(Intent.TRANSACTION_HISTORY);
+    }
+
+    @Test
+    @DisplayName("Should extract the lead token the way the grammars see it")
+    void shouldExtractLeadToken() {
+        assertThat(LeadToken.of("  Send 500")).isEqualTo("send");
+        assertThat(LeadToken.of("1,500 to john")).isEqualTo(LeadToken.NUMBER);
+        assertThat(LeadToken.of("confirm_abc")).isEqualTo("confirm");
+        assertThat(LeadToken.of("?")).isEmpty();
+    }
+
+    // The behaviour before lead-token dispatch: every parser, highest priority first
+    private ParsedIntent parseSequentially(String text) {
+        ParsedIntent best = null;
+        for (IntentParser parser : parsers.stream()
+            .sorted(Comparator.comparingInt(IntentParser::getPriority).reversed())
+            .toList()) {
+            Optional<ParsedIntent> result = parser.parse(text);
+            if (result.isPresent()) {
+                if (result.get().confidence() >= 0.9) {
+                    return result.get();
+                }
+                if (result.get().confidence() > (best != null ? best.confidence() : 0.0)) {
+                    best = result.get();
+                }
+            }
+        }
+        return best != null ? best : ParsedIntent.unknown();
+    }
+
+    // A low-priority parser that would win on confidence if it answered in time
+    private static class SlowParser implements IntentParser {
+
+        @Override
+        public Intent getSupportedIntent() {
+            return Intent.HELP;
+        }
+
+        @Override
+        public int getPriority() {
+            return 20;
+        }
+
+        @Override
+        public Optional<ParsedIntent> parse(String text) {
+            try {
+                Thread.sleep(2_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.of(ParsedIntent.builder().intent(Intent.HELP).confidence(0.89).build());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.pesatalk.service.intent;
+
+import com.pesatalk.model.enums.Intent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeywordIntentParserTest {
+
+    private final KeywordIntentParser parser = new KeywordIntentParser("");
+
+    @Test
+    @DisplayName("Should give an exact keyword full confidence and a contained one less")
+    void shouldPreferExactMatch() {
+        ParsedIntent exact = parser.parse("  Balance ").orElseThrow();
+        ParsedIntent contained = parser.parse("what is my balance").orElseThrow();
+
+        assertThat(exact.intent()).isEqualTo(Intent.CHECK_BALANCE);
+        assertThat(exact.confidence()).isEqualTo(0.9);
+        assertThat(contained.confidence()).isEqualTo(0.8);
+        assertThat(contained.metadata()).containsEntry("matchedKeyword", "my balance");
+    }
+
+    @Test
+    @DisplayName("Should pick the longest keyword when several intents match")
+    void shouldPreferLongestKeyword() {
+        ParsedIntent result = parser.parse("help me see my transactions").orElseThrow();
+
+        assertThat(result.intent()).isEqualTo(Intent.TRANSACTION_HISTORY);
+        assertThat(result.metadata()).containsEntry("matchedKeyword", "my transactions");
+    }
+
+    @Test
+    @DisplayName("Should find overlapping keywords in a single scan")
+    void shouldFindOverlappingKeywords() {
+        assertThat(parser.parse("show contacts").orElseThrow().intent()).isEqualTo(Intent.LIST_CONTACTS);
+        assertThat(parser.parse("saved numbers please").orElseThrow().intent()).isEqualTo(Intent.LIST_CONTACTS);
+        assertThat(parser.parse("what is the weather like today")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should hot-load extra keyword sets and keep the old ones on bad input")
+    void shouldHotLoadExtraKeywords(@TempDir Path dir) throws Exception {
+        Path sheng = dir.resolve("sheng.properties");
+        Files.writeString(sheng, "CHECK_BALANCE.keywords=doh ngapi, balo\nCHECK_BALANCE.confidence=0.9\n");
+        KeywordIntentParser hotParser = new KeywordIntentParser("file:" + dir + "/*.properties");
+
+        assertThat(hotParser.parse("balo").orElseThrow().intent()).isEqualTo(Intent.CHECK_BALANCE);
+        assertThat(hotParser.parse("niko na doh ngapi").orElseThrow().confidence()).isEqualTo(0.8);
+
+        Files.writeString(sheng, "NOT_AN_INTENT.keywords=balo\n");
+        hotParser.reloadExtraKeywords();
+        assertThat(hotParser.parse("balo")).isPresent();
+
+        Files.writeString(sheng, "HELP.keywords=nisaidie\n");
+        hotParser.reloadExtraKeywords();
+        assertThat(hotParser.parse("balo")).isEmpty();
+        assertThat(hotParser.parse("nisaidie").orElseThrow().intent()).isEqualTo(Intent.HELP);
+    }
+}
@@ -0,0 +1,128 @@
+package com.pesatalk.service.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pesatalk.exception.WhatsAppException;
+import com.pesatalk.model.OutboxNotification;
+import com.pesatalk.model.enums.NotificationStatus;
+import com.pesatalk.repository.OutboxNotificationRepository;
+import com.pesatalk.service.NotificationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NotificationOutboxRelayTest {
+
+    private final OutboxNotificationRepository repository = mock(OutboxNotificationRepository.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final NotificationOutboxRelay relay = new NotificationOutboxRelay(
+        repository, notificationService, new ObjectMapper(), new TransactionTemplate(transactionManager),
+        new SimpleMeterRegistry(), 200, 4, 3, Duration.ofSeconds(1), Duration.ofSeconds(2), Duration.ofMinutes(5),
+        Duration.ofDays(7));
+
+    @Test
+    @DisplayName("Should send each recipient's messages in the order they were queued")
+    void shouldSendInOrder() {
+        OutboxNotification first = notification("254711111111", "first");
+        OutboxNotification second = notification("254711111111", "second");
+        OutboxNotification other = notification("254722222222", "other");
+        pending(first, other, second);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(notificationService.deliverMessage(anyString(), anyString())).thenReturn(Mono.just("wamid.1"));
+
+        relay.relay();
+
+        var order = inOrder(notificationService);
+        order.verify(notificationService).deliverMessage("254711111111", "first");
+        order.verify(notificationService).deliverMessage("254711111111", "second");
+        verify(notificationService).deliverMessage("254722222222", "other");
+        assertThat(List.of(first, second, other))
+            .allMatch(notification -> notification.getStatus() == NotificationStatus.SENT);
+    }
+
+    @Test
+    @DisplayName("Should hold back a recipient's later messages behind a failed one and back off")
+    void shouldStopAtFailure() {
+        OutboxNotification first = notification("254711111111", "first");
+        OutboxNotification second = notification("254711111111", "second");
+        pending(first, second);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(notificationService.deliverMessage(anyString(), eq("first")))
+            .thenReturn(Mono.error(new IllegalStateException("429 Too Many Requests")));
+
+        Instant before = Instant.now();
+        relay.relay();
+
+        verify(notificationService, never()).deliverMessage(anyString(), eq("second"));
+        assertThat(first.getStatus()).isEqualTo(NotificationStatus.PENDING);
+        assertThat(first.getAttempts()).isEqualTo(1);
+        assertThat(first.getNextAttemptAt()).isAfterOrEqualTo(before.plusSeconds(2));
+        assertThat(second.getAttempts()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should mark a message FAILED after max attempts")
+    void shouldGiveUpAfterMaxAttempts() {
+        OutboxNotification notification = notification("254711111111", "hello");
+        notification.setAttempts(2);
+        pending(notification);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(notificationService.deliverMessage(anyString(), anyString())).thenReturn(Mono.empty());
+
+        relay.relay();
+
+        assertThat(notification.getStatus()).isEqualTo(NotificationStatus.FAILED);
+        assertThat(notification.getLastError()).contains("no message ID");
+    }
+
+    @Test
+    @DisplayName("Should mark a message FAILED at once when WhatsApp rejects it")
+    void shouldGiveUpOnRejection() {
+        OutboxNotification notification = notification("254711111111", "hello");
+        pending(notification);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(notificationService.deliverMessage(anyString(), anyString()))
+            .thenReturn(Mono.error(WhatsAppException.apiError(HttpStatus.BAD_REQUEST, "{}")));
+
+        relay.relay();
+
+        assertThat(notification.getStatus()).isEqualTo(NotificationStatus.FAILED);
+        assertThat(notification.getAttempts()).isEqualTo(1);
+    }
+
+    private void pending(OutboxNotification... notifications) {
+        when(repository.findDueInOrder(eq(NotificationStatus.PENDING), any(Instant.class), any()))
+            .thenReturn(List.of(notifications));
+    }
+
+    private static OutboxNotification notification(String recipient, String body) {
+        OutboxNotification notification = OutboxNotification.builder()
+            .recipientWhatsAppId(recipient)
+            .body(body)
+            .nextAttemptAt(Instant.now().minusSeconds(1))
+            .build();
+        notification.setId(UUID.randomUUID());
+        return notification;
+    }
+}
@@ -0,0 +1,98 @@
+package com.pesatalk.service.scheduler;
+
+import com.pesatalk.model.Transaction;
+import com.pesatalk.model.User;
+import com.pesatalk.model.enums.TransactionStatus;
+import com.pesatalk.model.enums.TransactionType;
+import com.pesatalk.repository.TransactionRepository;
+import com.pesatalk.service.outbox.NotificationOutbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConfirmationExpiryQueueTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final NotificationOutbox notificationOutbox = mock(NotificationOutbox.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private ConfirmationExpiryQueue queue;
+    private Transaction transaction;
+    private Instant now;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        queue = new ConfirmationExpiryQueue(redisTemplate, transactionRepository, notificationOutbox,
+            new TransactionTemplate(transactionManager), new SimpleMeterRegistry(),
+            "tx:confirmation-expiry", 100, Duration.ofSeconds(10));
+
+        now = Instant.now();
+        transaction = Transaction.builder()
+            .sender(User.builder().whatsAppId("254711111111").build())
+            .transactionType(TransactionType.SEND_MONEY)
+            .status(TransactionStatus.PENDING_CONFIRMATION)
+            .amount(new BigDecimal("250"))
+            .confirmationExpiresAt(now.minusMillis(300))
+            .build();
+        transaction.setId(UUID.randomUUID());
+        when(transactionRepository.findByIdWithLock(transaction.getId())).thenReturn(Optional.of(transaction));
+    }
+
+    @Test
+    @DisplayName("Should expire a due pending confirmation and queue the notice")
+    void shouldExpireDueConfirmation() {
+        queue.expire(transaction.getId(), now);
+
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.EXPIRED);
+        assertThat(transaction.getFailureReason()).isEqualTo("Confirmation timeout");
+        verify(notificationOutbox).enqueueMessage("254711111111",
+            "Your transaction of KES 250 has expired. Please start a new transaction if you still wish to proceed.",
+            "tx:" + transaction.getId() + ":EXPIRED");
+    }
+
+    @Test
+    @DisplayName("Should leave a confirmed transaction alone")
+    void shouldSkipConfirmed() {
+        transaction.transitionTo(TransactionStatus.CONFIRMED);
+
+        queue.expire(transaction.getId(), now);
+
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.CONFIRMED);
+        verify(notificationOutbox, never()).enqueueMessage(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("Should queue a confirmation polled before it is due again instead of expiring it")
+    void shouldRequeueEarlyConfirmation() {
+        transaction.setConfirmationExpiresAt(now.plusSeconds(5));
+
+        queue.expire(transaction.getId(), now);
+
+        assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.PENDING_CONFIRMATION);
+        verify(redisTemplate).execute(any(RedisCallback.class));
+    }
+}
@@ -0,0 +1,102 @@
+package com.pesatalk.service.scheduler;
+
+import com.pesatalk.model.Transaction;
+import com.pesatalk.model.User;
+import com.pesatalk.model.enums.TransactionStatus;
+import com.pesatalk.model.enums.TransactionType;
+import com.pesatalk.repository.TransactionRepository;
+import com.pesatalk.service.outbox.NotificationOutbox;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionSchedulerTest {
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final NotificationOutbox notificationOutbox = mock(NotificationOutbox.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private TransactionScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        scheduler = new TransactionScheduler(transactionRepository, notificationOutbox,
+            new TransactionTemplate(transactionManager), 2, Duration.ofMinutes(5));
+    }
+
+    @Test
+    @DisplayName("Should expire in chunks, resuming after the highest id in PostgreSQL order")
+    void shouldWalkChunksByKeyset() {
+        // Negative as a signed long, so UUID.compareTo would put it first
+        UUID high = UUID.fromString("f0000000-0000-0000-0000-000000000001");
+        UUID low = UUID.fromString("10000000-0000-0000-0000-000000000001");
+        UUID last = UUID.fromString("f1000000-0000-0000-0000-000000000001");
+        Transaction first = pending(high);
+        Transaction second = pending(low);
+        when(transactionRepository.findExpiredConfirmationsForUpdate(any(Instant.class), eq(FIRST_ID), any()))
+            .thenReturn(List.of(first, second));
+        when(transactionRepository.findExpiredConfirmationsForUpdate(any(Instant.class), eq(high), any()))
+            .thenReturn(List.of(pending(last)));
+
+        scheduler.expirePendingConfirmations();
+
+        verify(transactionRepository, times(2))
+            .findExpiredConfirmationsForUpdate(any(Instant.class), any(UUID.class), any());
+        assertThat(first.getStatus()).isEqualTo(TransactionStatus.EXPIRED);
+        assertThat(first.getFailureReason()).isEqualTo("Confirmation timeout");
+        verify(transactionRepository).saveAll(List.of(first, second));
+        verify(notificationOutbox).enqueueMessages(List.of(
+            new NotificationOutbox.QueuedMessage("254711111111",
+                "Your transaction of KES 100 has expired. Please start a new transaction if you still wish to proceed.",
+                "tx:" + high + ":EXPIRED"),
+            new NotificationOutbox.QueuedMessage("254711111111",
+                "Your transaction of KES 100 has expired. Please start a new transaction if you still wish to proceed.",
+                "tx:" + low + ":EXPIRED")
+        ));
+    }
+
+    @Test
+    @DisplayName("Should stop the run at a failed chunk without committing its notifications")
+    void shouldStopAtFailedChunk() {
+        when(transactionRepository.findStaleSTKPushesForUpdate(any(), eq(FIRST_ID), any()))
+            .thenThrow(new IllegalStateException("deadlock detected"));
+
+        scheduler.checkStaleSTKPushTransactions();
+
+        verify(notificationOutbox, never()).enqueueMessages(anyList());
+        verify(transactionManager).rollback(any());
+    }
+
+    private static Transaction pending(UUID id) {
+        Transaction transaction = Transaction.builder()
+            .sender(User.builder().whatsAppId("254711111111").build())
+            .transactionType(TransactionType.SEND_MONEY)
+            .status(TransactionStatus.PENDING_CONFIRMATION)
+            .amount(new BigDecimal("100"))
+            .build();
+        transaction.setId(id);
+        return transaction;
+    }
+}
@@ -0,0 +1,85 @@
+package com.pesatalk.service.webhook;
+
+import com.pesatalk.integration.whatsapp.dto.WhatsAppWebhookPayload;
+import com.pesatalk.service.MessageProcessingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class MessageCoalescerTest {
+
+    private final MessageProcessingService processingService = mock(MessageProcessingService.class);
+    private final MessageDispatcher dispatcher = new MessageDispatcher(1, false, 1, 100);
+    private MessageCoalescer coalescer;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        coalescer.destroy();
+        dispatcher.destroy();
+    }
+
+    @Test
+    @DisplayName("Should merge texts from one sender that arrive within the window")
+    void shouldMergeTextsWithinWindow() throws Exception {
+        coalescer = new MessageCoalescer(dispatcher, processingService, Duration.ofMillis(200), 5);
+
+        var m1 = text("m1", "254711111111", "send");
+        var m2 = text("m2", "254711111111", "500");
+        var m3 = text("m3", "254711111111", "to john");
+        CompletableFuture<Void> first = coalescer.dispatch(m1, "Amina");
+        coalescer.dispatch(m2, "Amina");
+        CompletableFuture<Void> last = coalescer.dispatch(m3, "Amina");
+
+        CompletableFuture.allOf(first, last).get(5, TimeUnit.SECONDS);
+        verify(processingService).processIncomingMessages(List.of(m1, m2, m3), "Amina");
+        verify(processingService, never()).processIncomingMessage(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should flush an open burst before a non-text message from the same sender")
+    void shouldFlushBeforeNonTextMessage() throws Exception {
+        coalescer = new MessageCoalescer(dispatcher, processingService, Duration.ofSeconds(30), 5);
+
+        var m1 = text("m1", "254722222222", "send 500");
+        var button = new WhatsAppWebhookPayload.Message("254722222222", "b1", null, "interactive", null, null, null);
+        CompletableFuture<Void> burst = coalescer.dispatch(m1, null);
+        CompletableFuture<Void> reply = coalescer.dispatch(button, null);
+
+        CompletableFuture.allOf(burst, reply).get(5, TimeUnit.SECONDS);
+        InOrder order = inOrder(processingService);
+        order.verify(processingService).processIncomingMessage(m1, null);
+        order.verify(processingService).processIncomingMessage(button, null);
+    }
+
+    @Test
+    @DisplayName("Should dispatch immediately when the window is disabled")
+    void shouldDispatchImmediatelyWhenDisabled() throws Exception {
+        coalescer = new MessageCoalescer(dispatcher, processingService, Duration.ZERO, 5);
+
+        var m1 = text("m1", "254733333333", "balance");
+        coalescer.dispatch(m1, "Otieno").get(5, TimeUnit.SECONDS);
+
+        verify(processingService).processIncomingMessage(eq(m1), eq("Otieno"));
+        verify(processingService, never()).processIncomingMessages(anyList(), any());
+    }
+
+    private WhatsAppWebhookPayload.Message text(String id, String from, String body) {
+        return new WhatsAppWebhookPayload.Message(
+            from, id, null, "text", new WhatsAppWebhookPayload.TextContent(body), null, null
+        );
+    }
+}
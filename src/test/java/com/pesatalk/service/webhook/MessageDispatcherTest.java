@@ -0,0 +1,55 @@
+package com.pesatalk.service.webhook;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageDispatcherTest {
+
+    private final MessageDispatcher dispatcher = new MessageDispatcher(1, false, 1, 2);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        dispatcher.destroy();
+    }
+
+    @Test
+    @DisplayName("Should refuse messages once a sender lane's queue is full and report its backlog")
+    void shouldBoundLaneQueue() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        dispatcher.dispatch("254711111111", () -> {
+            started.countDown();
+            await(release);
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Void> queued = dispatcher.dispatch("254711111111", () -> {});
+        dispatcher.dispatch("254711111111", () -> {});
+        CompletableFuture<Void> refused = dispatcher.dispatch("254711111111", () -> {});
+
+        assertThat(dispatcher.backlog()).isEqualTo(2);
+        assertThat(dispatcher.utilisation()).isEqualTo(1.0);
+        assertThat(refused).isCompletedExceptionally();
+        assertThat(refused.handle((ignored, error) -> error).get()).isInstanceOf(RejectedExecutionException.class);
+
+        release.countDown();
+        queued.get(5, TimeUnit.SECONDS);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.pesatalk.service.webhook;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pesatalk.integration.whatsapp.dto.WhatsAppWebhookPayload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WebhookEventReaderTest {
+
+    private WebhookEventReader reader;
+    private List<String> events;
+
+    @BeforeEach
+    void setUp() {
+        reader = new WebhookEventReader(new ObjectMapper());
+        events = new ArrayList<>();
+    }
+
+    @Test
+    @DisplayName("Should emit every message and status in a batched payload in order")
+    void shouldEmitMessagesAndStatuses() throws Exception {
+        read("""
+            {
+                "object": "whatsapp_business_account",
+                "entry": [{
+                    "id": "1",
+                    "changes": [{
+                        "value": {
+                            "metadata": {"phone_number_id": "123"},
+                            "contacts": [{"profile": {"name": "Amina"}, "wa_id": "254711111111"}],
+                            "messages": [
+                                {"from": "254711111111", "id": "m1", "type": "text", "text": {"body": "balance"}},
+                                {"from": "254711111111", "id": "m2", "type": "text", "text": {"body": "help"}}
+                            ]
+                        },
+                        "field": "messages"
+                    }]
+                }, {
+                    "id": "2",
+                    "changes": [{
+                        "value": {"statuses": [{"id": "s1", "status": "delivered"}]},
+                        "field": "messages"
+                    }]
+                }]
+            }
+            """);
+
+        assertThat(events).containsExactly("message:m1:Amina", "message:m2:Amina", "status:s1:delivered");
+    }
+
+    @Test
+    @DisplayName("Should attach sender name when contacts follow messages")
+    void shouldAttachSenderNameWhenContactsComeLate() throws Exception {
+        read("""
+            {"object": "whatsapp_business_account", "entry": [{"changes": [{"value": {
+                "messages": [{"from": "254722222222", "id": "m1", "type": "text"}],
+                "contacts": [{"profile": {"name": "Otieno"}}]
+            }}]}]}
+            """);
+
+        assertThat(events).containsExactly("message:m1:Otieno");
+    }
+
+    @Test
+    @DisplayName("Should ignore non-WhatsApp payloads wherever the object field appears")
+    void shouldIgnoreNonWhatsAppPayloads() throws Exception {
+        read("""
+            {"entry": [{"changes": [{"value": {"messages": [{"from": "1", "id": "m1"}]}}]}],
+             "object": "page"}
+            """);
+        read("""
+            {"entry": [{"changes": [{"value": {"messages": [{"from": "1", "id": "m2"}]}}]}]}
+            """);
+
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should reject malformed JSON")
+    void shouldRejectMalformedJson() {
+        assertThatThrownBy(() -> read("{\"object\": \"whatsapp_business_account\", \"entry\": ["))
+            .isInstanceOf(JsonProcessingException.class);
+        assertThatThrownBy(() -> read("[]"))
+            .isInstanceOf(JsonProcessingException.class);
+    }
+
+    private void read(String json) throws Exception {
+        reader.read(json.getBytes(StandardCharsets.UTF_8), new WebhookEventReader.EventHandler() {
+            @Override
+            public void onMessage(WhatsAppWebhookPayload.Message message, String senderName) {
+                events.add("message:" + message.id() + ":" + senderName);
+            }
+
+            @Override
+            public void onStatus(WhatsAppWebhookPayload.Status status) {
+                events.add("status:" + status.id() + ":" + status.status());
+            }
+        });
+    }
+}
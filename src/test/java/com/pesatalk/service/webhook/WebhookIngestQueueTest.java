@@ -0,0 +1,132 @@
+package com.pesatalk.service.webhook;
+
+import com.pesatalk.service.webhook.WebhookIngestQueue.IngestRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.RedisStreamCommands.XPendingOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebhookIngestQueueTest {
+
+    private static final Duration MIN_IDLE = Duration.ofSeconds(60);
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final RedisConnection connection = mock(RedisConnection.class);
+    private final RedisStreamCommands streamCommands = mock(RedisStreamCommands.class);
+    private final WebhookIngestQueue queue =
+        new WebhookIngestQueue(redisTemplate, true, "webhook:ingest", "webhook-processors", 1000);
+
+    // The group's pending list, in ID order
+    private final List<PendingMessage> pending = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(connection.streamCommands()).thenReturn(streamCommands);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(invocation ->
+            invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+        when(streamCommands.xPending(any(byte[].class), anyString(), any(XPendingOptions.class)))
+            .thenAnswer(invocation -> page(invocation.getArgument(2)));
+        when(streamCommands.xClaim(any(byte[].class), anyString(), anyString(), any(XClaimOptions.class)))
+            .thenAnswer(invocation -> invocation.<XClaimOptions>getArgument(3).getIds().stream()
+                .map(id -> StreamRecords.newRecord()
+                    .in("webhook:ingest".getBytes(StandardCharsets.UTF_8))
+                    .withId(id)
+                    .ofBytes(Map.of("p".getBytes(StandardCharsets.UTF_8), id.getValue().getBytes(StandardCharsets.UTF_8))))
+                .toList());
+    }
+
+    @Test
+    @DisplayName("Should page past entries still being worked on to claim idle ones behind them")
+    void shouldClaimIdleEntriesBehindBusyOnes() {
+        for (int i = 1; i <= 7; i++) {
+            pending(i + "-0", Duration.ofSeconds(1), 1);
+        }
+        pending("8-0", Duration.ofMinutes(5), 2);
+        pending("9-0", Duration.ofSeconds(1), 1);
+        pending("10-0", Duration.ofMinutes(5), 1);
+
+        List<IngestRecord> claimed = queue.claimIdle("consumer-1", MIN_IDLE, 3);
+
+        assertThat(claimed).extracting(IngestRecord::id).containsExactly("8-0", "10-0");
+        assertThat(claimed).extracting(IngestRecord::deliveryCount).containsExactly(3L, 2L);
+        assertThat(claimed.get(0).payload()).asString(StandardCharsets.UTF_8).isEqualTo("8-0");
+    }
+
+    @Test
+    @DisplayName("Should stop paging once count idle entries are found")
+    void shouldStopAtCount() {
+        for (int i = 1; i <= 6; i++) {
+            pending(i + "-0", Duration.ofMinutes(5), 1);
+        }
+
+        List<IngestRecord> claimed = queue.claimIdle("consumer-1", MIN_IDLE, 2);
+
+        assertThat(claimed).extracting(IngestRecord::id).containsExactly("1-0", "2-0");
+    }
+
+    @Test
+    @DisplayName("Should claim nothing when no pending entry has been idle long enough")
+    void shouldClaimNothingWhenAllBusy() {
+        pending("1-0", Duration.ofSeconds(1), 1);
+
+        assertThat(queue.claimIdle("consumer-1", MIN_IDLE, 5)).isEmpty();
+        verify(streamCommands, never()).xClaim(any(byte[].class), anyString(), anyString(), any(XClaimOptions.class));
+    }
+
+    @Test
+    @DisplayName("Should copy a dead-lettered payload to the dead letter stream and acknowledge it")
+    void shouldDeadLetter() {
+        queue.deadLetter(new IngestRecord("1-0", "{}".getBytes(StandardCharsets.UTF_8), 5), "Exceeded 5 delivery attempts");
+
+        verify(streamCommands).xAdd(any(MapRecord.class), any(XAddOptions.class));
+        verify(streamCommands).xAck(any(byte[].class), eq("webhook-processors"), eq(RecordId.of("1-0")));
+    }
+
+    private void pending(String id, Duration idle, long deliveries) {
+        pending.add(new PendingMessage(RecordId.of(id), Consumer.from("webhook-processors", "consumer-0"), idle, deliveries));
+    }
+
+    // Serves XPENDING from the pending list, honouring the inclusive lower bound and count
+    private PendingMessages page(XPendingOptions options) {
+        var lower = options.getRange().getLowerBound();
+        List<PendingMessage> page = pending.stream()
+            .filter(message -> lower.getValue()
+                .map(from -> compare(message.getIdAsString(), from.toString()) >= 0)
+                .orElse(true))
+            .limit(options.getCount())
+            .toList();
+        return new PendingMessages("webhook-processors", page);
+    }
+
+    private static int compare(String left, String right) {
+        return Long.compare(Long.parseLong(left.split("-")[0]), Long.parseLong(right.split("-")[0]));
+    }
+}
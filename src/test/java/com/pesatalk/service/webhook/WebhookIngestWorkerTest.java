@@ -0,0 +1,117 @@
+package com.pesatalk.service.webhook;
+
+import com.pesatalk.service.webhook.WebhookIngestQueue.IngestRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebhookIngestWorkerTest {
+
+    private static final byte[] PAYLOAD = "{}".getBytes(StandardCharsets.UTF_8);
+
+    private final WebhookIngestQueue ingestQueue = mock(WebhookIngestQueue.class);
+    private final WebhookPayloadProcessor payloadProcessor = mock(WebhookPayloadProcessor.class);
+    private WebhookIngestWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        when(ingestQueue.isEnabled()).thenReturn(true);
+        when(ingestQueue.readNew(anyString(), anyInt(), any())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return List.of();
+        });
+        worker = new WebhookIngestWorker(ingestQueue, payloadProcessor, Runnable::run,
+            "test-consumer", 10, 5, Duration.ofMillis(20), Duration.ofMinutes(1), 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.stop();
+    }
+
+    @Test
+    @DisplayName("Should acknowledge a payload only once its messages have completed")
+    void shouldAckAfterCompletion() throws Exception {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        when(ingestQueue.claimIdle(anyString(), any(), anyInt()))
+            .thenReturn(List.of(new IngestRecord("1-0", PAYLOAD, 2)))
+            .thenReturn(List.of());
+        when(payloadProcessor.process(PAYLOAD)).thenReturn(completion);
+
+        worker.start();
+
+        verify(payloadProcessor, timeout(1000)).process(PAYLOAD);
+        verify(ingestQueue, after(100).never()).ack(anyString());
+
+        completion.complete(null);
+
+        verify(ingestQueue, timeout(1000)).ack("1-0");
+        verify(ingestQueue, never()).deadLetter(any(), anyString());
+    }
+
+    @Test
+    @DisplayName("Should leave a failed payload pending before its last allowed delivery")
+    void shouldLeaveFailedPayloadPending() throws Exception {
+        when(ingestQueue.claimIdle(anyString(), any(), anyInt()))
+            .thenReturn(List.of(new IngestRecord("1-0", PAYLOAD, 2)))
+            .thenReturn(List.of());
+        when(payloadProcessor.process(PAYLOAD))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("boom")));
+
+        worker.start();
+
+        verify(payloadProcessor, timeout(1000)).process(PAYLOAD);
+        verify(ingestQueue, after(100).never()).ack(anyString());
+        verify(ingestQueue, never()).deadLetter(any(), anyString());
+        verify(payloadProcessor, never()).abandon(any());
+    }
+
+    @Test
+    @DisplayName("Should dead-letter and abandon a payload that fails on its last allowed delivery")
+    void shouldDeadLetterAtMaxDeliveries() throws Exception {
+        IngestRecord record = new IngestRecord("1-0", PAYLOAD, 3);
+        when(ingestQueue.claimIdle(anyString(), any(), anyInt()))
+            .thenReturn(List.of(record))
+            .thenReturn(List.of());
+        when(payloadProcessor.process(PAYLOAD))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("boom")));
+
+        worker.start();
+
+        verify(ingestQueue, timeout(1000)).deadLetter(eq(record), anyString());
+        verify(payloadProcessor, timeout(1000)).abandon(PAYLOAD);
+        verify(ingestQueue, never()).ack(anyString());
+    }
+
+    @Test
+    @DisplayName("Should dead-letter a payload already past max deliveries without processing it")
+    void shouldDeadLetterWithoutProcessingPastMaxDeliveries() throws Exception {
+        IngestRecord record = new IngestRecord("1-0", PAYLOAD, 4);
+        when(ingestQueue.claimIdle(anyString(), any(), anyInt()))
+            .thenReturn(List.of(record))
+            .thenReturn(List.of());
+
+        worker.start();
+
+        verify(ingestQueue, timeout(1000)).deadLetter(eq(record), anyString());
+        verify(payloadProcessor, timeout(1000)).abandon(PAYLOAD);
+        verify(payloadProcessor, never()).process(any());
+    }
+}
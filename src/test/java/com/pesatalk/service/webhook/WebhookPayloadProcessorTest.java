@@ -0,0 +1,80 @@
+package com.pesatalk.service.webhook;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pesatalk.service.MessageDeduplicationService;
+import com.pesatalk.service.MessageStatusService;
+import com.pesatalk.service.NotificationService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebhookPayloadProcessorTest {
+
+    private static final byte[] PAYLOAD = """
+        {
+            "object": "whatsapp_business_account",
+            "entry": [{
+                "id": "1",
+                "changes": [{
+                    "value": {
+                        "contacts": [{"profile": {"name": "Amina"}, "wa_id": "254711111111"}],
+                        "messages": [
+                            {"from": "254711111111", "id": "m1", "type": "text", "text": {"body": "send"}},
+                            {"from": "254711111111", "id": "m2", "type": "text", "text": {"body": "500"}},
+                            {"from": "254722222222", "id": "m3", "type": "text", "text": {"body": "help"}}
+                        ]
+                    },
+                    "field": "messages"
+                }]
+            }]
+        }
+        """.getBytes(StandardCharsets.UTF_8);
+
+    private final MessageDeduplicationService deduplicationService = mock(MessageDeduplicationService.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final WebhookPayloadProcessor processor = new WebhookPayloadProcessor(
+        mock(MessageCoalescer.class),
+        new WebhookEventReader(new ObjectMapper()),
+        deduplicationService,
+        mock(MessageStatusService.class),
+        notificationService,
+        50
+    );
+
+    @Test
+    @DisplayName("Should tell each sender of an abandoned payload once, and only for unprocessed messages")
+    void shouldNotifySendersOfUnprocessedMessages() {
+        // m3 completed before the payload failed, so its claim is still held
+        when(deduplicationService.claim(List.of("m1", "m2", "m3"))).thenReturn(new LinkedHashSet<>(Set.of("m1", "m2")));
+
+        processor.abandon(PAYLOAD);
+
+        verify(deduplicationService).markProcessed("m1");
+        verify(deduplicationService).markProcessed("m2");
+        verify(deduplicationService, never()).markProcessed("m3");
+        verify(notificationService, times(1)).sendErrorMessage(eq("254711111111"), anyString());
+        verify(notificationService, never()).sendErrorMessage(eq("254722222222"), anyString());
+    }
+
+    @Test
+    @DisplayName("Should not notify anyone when every message of an abandoned payload completed")
+    void shouldNotNotifyWhenAllProcessed() {
+        when(deduplicationService.claim(List.of("m1", "m2", "m3"))).thenReturn(new LinkedHashSet<>());
+
+        processor.abandon(PAYLOAD);
+
+        verify(notificationService, never()).sendErrorMessage(anyString(), anyString());
+    }
+}